@@ -0,0 +1,70 @@
+package com.example.demo.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding a Gemini {@code generateContent} response and extracting the SQL from it, for a short
+ * and a long generated statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiResponseBenchmark {
+
+  private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+  @Param({"1", "50"})
+  private int selectedColumns;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private GeminiClient client;
+  private byte[] responseBody;
+  private Map<String, Object> decodedBody;
+
+  @Setup
+  public void setUp() throws IOException {
+    client = new GeminiClient(objectMapper, new SimpleMeterRegistry(), "http://localhost/unused", "key",
+        1000, 1000, 0, 10, 10, false, "");
+
+    StringBuilder sql = new StringBuilder("```sql\\nSELECT ");
+    for (int i = 0; i < selectedColumns; i++) {
+      sql.append(i == 0 ? "" : ", ").append("t.column_").append(i);
+    }
+    sql.append("\\nFROM users t\\nWHERE t.email LIKE '%@gmail.com'\\nORDER BY t.id DESC\\nLIMIT 100;\\n```");
+    String body = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + sql
+        + "\"}],\"role\":\"model\"},\"finishReason\":\"STOP\",\"index\":0}],"
+        + "\"usageMetadata\":{\"promptTokenCount\":812,\"candidatesTokenCount\":64,\"totalTokenCount\":876}}";
+    responseBody = body.getBytes(StandardCharsets.UTF_8);
+    decodedBody = objectMapper.readValue(responseBody, MAP_TYPE);
+  }
+
+  @Benchmark
+  public String extractSql() {
+    return client.extractSqlFromGeminiResponse(decodedBody);
+  }
+
+  @Benchmark
+  public String decodeAndExtractSql() throws IOException {
+    return client.extractSqlFromGeminiResponse(objectMapper.readValue(responseBody, MAP_TYPE));
+  }
+}
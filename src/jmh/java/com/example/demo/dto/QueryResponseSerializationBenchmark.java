@@ -0,0 +1,106 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON serialization of a {@link QueryResponse} in each {@link ResultFormat}, shaped as
+ * QueryResultExtractor builds it: five columns (bigint, text, double, boolean, text).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueryResponseSerializationBenchmark {
+
+  private static final List<String> COLUMNS = List.of("id", "email", "score", "active", "city");
+
+  @Param({"10000", "100000", "1000000"})
+  private int rows;
+
+  @Param({"ROWS", "COMPACT", "COLUMNAR"})
+  private ResultFormat format;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private QueryResponse response;
+
+  @Setup
+  public void setUp() {
+    response = new QueryResponse();
+    response.setRc("200");
+    response.setMessage("Query executed successfully.");
+    response.setExecutedQuery("SELECT id, email, score, active, city FROM users");
+    response.setQueryType("HUMAN");
+    response.setColumns(COLUMNS);
+    response.setRowsAffected(rows);
+    response.setExecutionTimeMs(0L);
+
+    switch (format) {
+      case ROWS -> {
+        List<Map<String, Object>> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+          Map<String, Object> row = new LinkedHashMap<>();
+          Object[] values = row(i);
+          for (int c = 0; c < values.length; c++) {
+            row.put(COLUMNS.get(c), values[c]);
+          }
+          data.add(row);
+        }
+        response.setData(data);
+      }
+      case COMPACT -> {
+        List<Object[]> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+          data.add(row(i));
+        }
+        response.setResultFormat("compact");
+        response.setRows(data);
+      }
+      case COLUMNAR -> {
+        long[] ids = new long[rows];
+        List<Object> emails = new ArrayList<>(rows);
+        double[] scores = new double[rows];
+        boolean[] active = new boolean[rows];
+        List<Object> cities = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+          Object[] values = row(i);
+          ids[i] = (Long) values[0];
+          emails.add(values[1]);
+          scores[i] = (Double) values[2];
+          active[i] = (Boolean) values[3];
+          cities.add(values[4]);
+        }
+        response.setResultFormat("columnar");
+        response.setColumnData(List.of(ids, emails, scores, active, cities));
+      }
+    }
+  }
+
+  @Benchmark
+  public void serialize() throws IOException {
+    objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+  }
+
+  private static Object[] row(int i) {
+    return new Object[] {(long) i, "user" + i + "@example.com", i * 0.5, i % 3 == 0, i % 7 == 0 ? null : "City " + (i % 100)};
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.InsertData;
+import com.example.demo.dto.InsertResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+/**
+ * {@link TableDataService#insertData} without a database: identifier validation, per-row column
+ * checks, SQL building and batch argument preparation. The JDBC batch is a no-op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertDataBenchmark {
+
+  @Param({"1000", "10000"})
+  private int rows;
+
+  @Param({"8"})
+  private int columns;
+
+  private TableDataService service;
+  private InsertData data;
+
+  @Setup
+  public void setUp() {
+    service = new TableDataService();
+    ReflectionTestUtils.setField(service, "jdbcTemplate", new NoOpJdbcTemplate());
+    ReflectionTestUtils.setField(service, "transactionManager", new NoOpTransactionManager());
+    ReflectionTestUtils.setField(service, "eventPublisher", (ApplicationEventPublisher) event -> {});
+    QueryMetrics queryMetrics = new QueryMetrics();
+    ReflectionTestUtils.setField(queryMetrics, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(service, "queryMetrics", queryMetrics);
+    ReflectionTestUtils.setField(service, "chunkSize", 1000);
+
+    List<List<InsertData.ColumnData>> rowList = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      List<InsertData.ColumnData> row = new ArrayList<>(columns);
+      for (int c = 0; c < columns; c++) {
+        Object value = c % 2 == 0 ? "value " + i : Long.valueOf(i);
+        row.add(new InsertData.ColumnData("column_" + c, value));
+      }
+      rowList.add(row);
+    }
+    data = new InsertData();
+    data.setTableName("benchmark_table");
+    data.setRows(rowList);
+  }
+
+  @Benchmark
+  public InsertResponse insertData() {
+    return service.insertData(data);
+  }
+
+  private static final class NoOpJdbcTemplate extends JdbcTemplate {
+
+    @Override
+    public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+      return new int[batchArgs.size()];
+    }
+  }
+
+  private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) {
+      return new SimpleTransactionStatus();
+    }
+
+    @Override
+    public void commit(TransactionStatus status) {}
+
+    @Override
+    public void rollback(TransactionStatus status) {}
+  }
+}
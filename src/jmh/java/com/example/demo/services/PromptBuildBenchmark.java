@@ -0,0 +1,94 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * {@link QueryServices#createAIJsonPromptFormat(QueryRequest, Map)} and the JSON encoding of the
+ * prompt, on schemas shaped like the ones {@link SchemaService} returns, with and without a
+ * token budget for {@link PromptCompactor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBuildBenchmark {
+
+  @Param({"10", "200"})
+  private int tables;
+
+  @Param({"40"})
+  private int columnsPerTable;
+
+  /** Prompt token budget; 0 describes every column. */
+  @Param({"0", "3000"})
+  private int maxTokens;
+
+  private final QueryServices queryServices = new QueryServices();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private QueryRequest request;
+  private Map<String, Map<String, Map<String, Object>>> tableSchemas;
+
+  @Setup
+  public void setUp() {
+    PromptCompactor promptCompactor = new PromptCompactor();
+    ReflectionTestUtils.setField(promptCompactor, "maxTokens", maxTokens);
+    ReflectionTestUtils.setField(queryServices, "promptCompactor", promptCompactor);
+
+    List<String> tableNames = new ArrayList<>(tables);
+    tableSchemas = new LinkedHashMap<>();
+    for (int t = 0; t < tables; t++) {
+      String tableName = "table_" + t;
+      tableNames.add(tableName);
+      Map<String, Object> columns = new LinkedHashMap<>();
+      for (int c = 0; c < columnsPerTable; c++) {
+        Map<String, Object> column = new LinkedHashMap<>();
+        column.put("column_name", "column_" + c);
+        column.put("data_type", c % 3 == 0 ? "bigint" : "character varying");
+        column.put("character_maximum_length", c % 3 == 0 ? null : 255);
+        column.put("is_nullable", "YES");
+        column.put("ordinal_position", c + 1);
+        column.put("is_primary_key", c == 0);
+        columns.put("column_" + c, column);
+      }
+      Map<String, Map<String, Object>> table = new LinkedHashMap<>();
+      table.put("columns", columns);
+      table.put("indexes", new LinkedHashMap<>());
+      tableSchemas.put(tableName, table);
+    }
+
+    request = new QueryRequest();
+    request.setNaturalLanguageQuery("Show the ten most recent rows of every table with a non-null column_3");
+    request.setTableNames(tableNames);
+  }
+
+  @Benchmark
+  public Map<String, Object> buildPrompt() {
+    return queryServices.createAIJsonPromptFormat(request, tableSchemas);
+  }
+
+  @Benchmark
+  public String buildPromptJson() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(queryServices.createAIJsonPromptFormat(request, tableSchemas));
+  }
+}
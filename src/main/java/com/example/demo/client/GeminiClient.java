@@ -0,0 +1,318 @@
+package com.example.demo.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client for the Gemini {@code generateContent} API.
+ *
+ * <p>By default the answer is requested from {@code streamGenerateContent} as server-sent events
+ * and parsed while it arrives ({@link GeminiStreamParser}). The SQL is returned as soon as its
+ * code block is closed, so the cost guard and execution start while the model would still be
+ * writing its explanation. {@code gemini.client.stream=false} uses the blocking endpoint.
+ *
+ * <p>Uses one shared {@link HttpClient} (HTTP/2 with keep-alive connection reuse) with connect
+ * and per-request timeouts, so a slow LLM response can never hold a caller indefinitely.
+ * Transient failures (I/O errors, timeouts, 429 and 5xx responses) are retried with exponential
+ * backoff and full jitter. All calls are asynchronous; {@link #generateSql(String)} is a
+ * blocking convenience wrapper.
+ *
+ * <p>Every HTTP attempt is timed in {@code queryx.gemini.requests}, tagged with its outcome and
+ * status, and retries are counted in {@code queryx.gemini.retries}.
+ */
+@Component
+public class GeminiClient {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiClient.class);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Counter retries;
+    private final String apiUrl;
+    private final String streamUrl;
+    private final boolean stream;
+    private final String apiKey;
+    private final Duration requestTimeout;
+    private final int maxRetries;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    @Autowired
+    public GeminiClient(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/gemini-pro:generateContent}") String apiUrl,
+            @Value("${gemini.api.key:}") String apiKey,
+            @Value("${gemini.client.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${gemini.client.request-timeout-ms:30000}") long requestTimeoutMs,
+            @Value("${gemini.client.max-retries:2}") int maxRetries,
+            @Value("${gemini.client.initial-backoff-ms:200}") long initialBackoffMs,
+            @Value("${gemini.client.max-backoff-ms:2000}") long maxBackoffMs,
+            @Value("${gemini.client.stream:true}") boolean stream,
+            @Value("${gemini.api.stream-url:}") String streamUrl) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.retries = Counter.builder("queryx.gemini.retries")
+            .description("Gemini calls retried after a transient failure")
+            .register(meterRegistry);
+        this.apiUrl = apiUrl;
+        this.stream = stream;
+        this.streamUrl = streamUrl == null || streamUrl.isBlank() ? streamUrlFor(apiUrl) : streamUrl;
+        this.apiKey = apiKey;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.maxRetries = maxRetries;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .build();
+    }
+
+    /**
+     * Sends the prompt to Gemini and completes with the SQL text of the first candidate.
+     */
+    public CompletableFuture<String> generateSqlAsync(String prompt) {
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Missing Gemini API key"));
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(stream ? streamUrl : apiUrl))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(requestBody(prompt))))
+                .build();
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (stream) {
+            return streamWithRetry(request, 0);
+        }
+        return sendWithRetry(request, 0).thenApply(this::parseResponse);
+    }
+
+    /**
+     * The {@code streamGenerateContent} URL (as server-sent events) of a {@code generateContent} URL.
+     */
+    static String streamUrlFor(String apiUrl) {
+        String url = apiUrl.replace(":generateContent", ":streamGenerateContent");
+        return url + (url.contains("?") ? "&" : "?") + "alt=sse";
+    }
+
+    /**
+     * Blocking variant of {@link #generateSqlAsync(String)}.
+     */
+    public String generateSql(String prompt) throws Exception {
+        try {
+            return generateSqlAsync(prompt).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private Map<String, Object> requestBody(String prompt) {
+        return Map.of("contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))));
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> sendWithRetry(HttpRequest request, int attempt) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .handle((response, error) -> {
+                recordAttempt(sample, response == null ? -1 : response.statusCode(), error);
+                boolean retryable = error != null
+                    ? isRetryable(error)
+                    : response.statusCode() == 429 || response.statusCode() >= 500;
+                if (!retryable || attempt >= maxRetries) {
+                    return error != null
+                        ? CompletableFuture.<HttpResponse<byte[]>>failedFuture(unwrap(error))
+                        : CompletableFuture.completedFuture(response);
+                }
+                retries.increment();
+                long delay = backoffDelay(attempt);
+                log.debug("Gemini call failed ({}), retry {} of {} in {} ms",
+                    error != null ? unwrap(error).toString() : "HTTP " + response.statusCode(),
+                    attempt + 1, maxRetries, delay);
+                return CompletableFuture.supplyAsync(() -> null,
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> sendWithRetry(request, attempt + 1));
+            })
+            .thenCompose(future -> future);
+    }
+
+    /**
+     * Streams the answer through a {@link GeminiStreamParser}. An attempt ends when the SQL is
+     * complete, on an error status, or when the stream fails or exceeds the request timeout;
+     * the same failures as in {@link #sendWithRetry} are retried.
+     */
+    private CompletableFuture<String> streamWithRetry(HttpRequest request, int attempt) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        GeminiStreamParser parser = new GeminiStreamParser(objectMapper);
+        httpClient.sendAsync(request, info -> {
+                parser.onHeaders(info);
+                return info.statusCode() >= 200 && info.statusCode() < 300
+                    ? HttpResponse.BodySubscribers.fromLineSubscriber(parser)
+                    : HttpResponse.BodySubscribers.discarding();
+            })
+            .whenComplete((response, error) -> {
+                if (error != null) {
+                    parser.fail(unwrap(error));
+                } else if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                    parser.fail(new IllegalStateException("Gemini API refused the request (HTTP " + response.statusCode() + ")"));
+                }
+            });
+        // The request timeout only covers the response headers; bound the whole stream as well.
+        // orTimeout drops its timer as soon as the result completes, so the parser is not kept alive.
+        return parser.result()
+            .orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+            .handle((sql, failure) -> {
+                Throwable error = failure;
+                if (unwrap(error) instanceof TimeoutException) {
+                    error = new HttpTimeoutException("Gemini response not complete after " + requestTimeout.toMillis() + " ms");
+                    // Stop reading the stream
+                    parser.fail(error);
+                }
+                int code = parser.statusCode();
+                recordAttempt(sample, code, error);
+                if (error == null) {
+                    return CompletableFuture.completedFuture(sql);
+                }
+                boolean refused = code >= 0 && (code < 200 || code >= 300);
+                boolean retryable = refused ? code == 429 || code >= 500 : isRetryable(error);
+                if (!retryable || attempt >= maxRetries) {
+                    return CompletableFuture.<String>failedFuture(unwrap(error));
+                }
+                retries.increment();
+                long delay = backoffDelay(attempt);
+                log.debug("Gemini stream failed ({}), retry {} of {} in {} ms",
+                    unwrap(error).toString(), attempt + 1, maxRetries, delay);
+                return CompletableFuture.supplyAsync(() -> null,
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> streamWithRetry(request, attempt + 1));
+            })
+            .thenCompose(future -> future);
+    }
+
+    /**
+     * @param code the HTTP status, or -1 when no response arrived
+     */
+    private void recordAttempt(Timer.Sample sample, int code, Throwable error) {
+        String outcome;
+        String status = code < 0 ? "none" : String.valueOf(code);
+        if (code >= 0 && (code < 200 || code >= 300)) {
+            outcome = "http_error";
+        } else if (error != null) {
+            outcome = unwrap(error) instanceof HttpTimeoutException ? "timeout" : "io_error";
+        } else {
+            outcome = "success";
+        }
+        sample.stop(Timer.builder("queryx.gemini.requests")
+            .description("Gemini HTTP attempts, including retries")
+            .tag("outcome", outcome)
+            .tag("status", status)
+            .register(meterRegistry));
+    }
+
+    /**
+     * Exponential backoff with full jitter: a random delay in [0, min(max, initial * 2^attempt)].
+     */
+    long backoffDelay(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private boolean isRetryable(Throwable error) {
+        return unwrap(error) instanceof IOException;
+    }
+
+    private Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private String parseResponse(HttpResponse<byte[]> response) {
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new IllegalStateException("Gemini API refused the request (HTTP " + response.statusCode() + ")");
+        }
+        try {
+            Map<String, Object> body = objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
+            return extractSqlFromGeminiResponse(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable Gemini response: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    String extractSqlFromGeminiResponse(Map<String, Object> body) {
+        List<Map<String, Object>> candidates = (List<Map<String, Object>>) body.get("candidates");
+        if (candidates == null || candidates.isEmpty()) {
+            throw new IllegalStateException("No candidates returned by Gemini");
+        }
+
+        Map<String, Object> firstCandidate = candidates.get(0);
+        Map<String, Object> content = (Map<String, Object>) firstCandidate.get("content");
+        if (content == null) {
+            throw new IllegalStateException("No content section in Gemini response");
+        }
+
+        List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
+        if (parts == null || parts.isEmpty()) {
+            throw new IllegalStateException("No parts returned by Gemini");
+        }
+
+        String text = (String) parts.get(0).get("text");
+        if (text == null) {
+            throw new IllegalStateException("Empty text returned from Gemini");
+        }
+
+        return cleanSql(text);
+    }
+
+    /**
+     * Strips markdown code fences, surrounding whitespace and a trailing semicolon.
+     */
+    static String cleanSql(String text) {
+        text = text.strip();
+
+        // Remove markdown code fences
+        if (text.startsWith("```sql")) {
+            text = text.substring(6).strip();
+        } else if (text.startsWith("```")) {
+            text = text.substring(3).strip();
+        }
+        if (text.endsWith("```")) {
+            text = text.substring(0, text.length() - 3).strip();
+        }
+
+        // Remove trailing semicolon if present
+        text = text.trim();
+        if (text.endsWith(";")) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+
+        return text;
+    }
+}
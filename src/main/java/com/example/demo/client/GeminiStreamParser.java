@@ -0,0 +1,164 @@
+package com.example.demo.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads a {@code streamGenerateContent} response line by line and completes {@link #result()}
+ * with the SQL as soon as a fenced code block has been closed, without waiting for the rest of
+ * the answer (explanations, finish reason). The remaining stream is then cancelled.
+ *
+ * <p>Server-sent events ({@code alt=sse}) are parsed chunk by chunk. Any other body is taken as
+ * one JSON document (a chunk, or an array of chunks) at the end of the stream. A response without
+ * a code fence completes with its whole text once the stream ends.
+ */
+final class GeminiStreamParser implements Flow.Subscriber<String> {
+
+    private final ObjectMapper objectMapper;
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder pending = new StringBuilder();
+    private volatile int statusCode = -1;
+    private volatile boolean eventStream;
+    private volatile Flow.Subscription subscription;
+
+    GeminiStreamParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    CompletableFuture<String> result() {
+        return result;
+    }
+
+    /**
+     * HTTP status of the response, or -1 while no response has arrived.
+     */
+    int statusCode() {
+        return statusCode;
+    }
+
+    void onHeaders(HttpResponse.ResponseInfo info) {
+        statusCode = info.statusCode();
+        eventStream = info.headers().firstValue("Content-Type")
+            .map(type -> type.startsWith("text/event-stream"))
+            .orElse(false);
+    }
+
+    /**
+     * Fails the result, unless it is already complete, and stops reading.
+     */
+    void fail(Throwable error) {
+        result.completeExceptionally(error);
+        cancel();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (result.isDone()) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            if (!eventStream) {
+                pending.append(line).append('\n');
+            } else if (line.isEmpty()) {
+                flushEvent();
+            } else if (line.startsWith("data:")) {
+                if (pending.length() > 0) {
+                    pending.append('\n');
+                }
+                pending.append(line, 5, line.length());
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(new IllegalStateException("Unreadable Gemini response: " + e.getMessage(), e));
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        fail(error);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            if (eventStream) {
+                flushEvent();
+            } else if (!pending.toString().isBlank()) {
+                JsonNode body = objectMapper.readTree(pending.toString());
+                if (body.isArray()) {
+                    body.forEach(this::appendText);
+                } else {
+                    appendText(body);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(new IllegalStateException("Unreadable Gemini response: " + e.getMessage(), e));
+            return;
+        }
+        String block = closedCodeBlock(text);
+        String sql = GeminiClient.cleanSql(block != null ? block : text.toString());
+        if (sql.isEmpty()) {
+            fail(new IllegalStateException("Empty text returned from Gemini"));
+        } else {
+            result.complete(sql);
+        }
+    }
+
+    private void flushEvent() throws IOException {
+        if (pending.length() == 0) {
+            return;
+        }
+        JsonNode chunk = objectMapper.readTree(pending.toString());
+        pending.setLength(0);
+        appendText(chunk);
+
+        String block = closedCodeBlock(text);
+        if (block != null) {
+            result.complete(GeminiClient.cleanSql(block));
+            cancel();
+        }
+    }
+
+    private void appendText(JsonNode chunk) {
+        for (JsonNode part : chunk.path("candidates").path(0).path("content").path("parts")) {
+            text.append(part.path("text").asText(""));
+        }
+    }
+
+    /**
+     * The first code block of {@code text}, fences included, once its closing fence has arrived.
+     */
+    static String closedCodeBlock(CharSequence text) {
+        String value = text.toString();
+        int open = value.indexOf("```");
+        if (open < 0) {
+            return null;
+        }
+        int close = value.indexOf("```", open + 3);
+        return close < 0 ? null : value.substring(open, close + 3);
+    }
+
+    private void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
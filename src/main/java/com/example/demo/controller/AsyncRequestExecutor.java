@@ -0,0 +1,53 @@
+package com.example.demo.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Threads that write {@code StreamingResponseBody} responses: the stream and export endpoints.
+ * Each of these holds a connection for as long as the client reads, so they get a pool of their
+ * own instead of Spring's shared task executor, and never hold up the query executor.
+ *
+ * <p>Streams beyond {@code http.async.pool-size} wait for a thread; the wait counts against their
+ * statement timeout and shows as {@code "state": "queued"} in /query/running.
+ */
+@Component
+public class AsyncRequestExecutor implements WebMvcConfigurer {
+
+    @Value("${http.async.pool-size:8}")
+    private int poolSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @PostConstruct
+    void init() {
+        executor.setCorePoolSize(Math.max(1, poolSize));
+        executor.setMaxPoolSize(Math.max(1, poolSize));
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("stream-");
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "stream", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
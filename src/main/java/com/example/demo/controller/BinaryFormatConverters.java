@@ -0,0 +1,51 @@
+package com.example.demo.controller;
+
+import com.example.demo.services.QueryMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.List;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Adds Smile, CBOR and MessagePack to content negotiation on every endpoint. Their mappers are
+ * copies of the application's ObjectMapper, so they serialize exactly what JSON does.
+ *
+ * <p>The converters go after the JSON converter: a request without an Accept header, or with
+ * {@code *}{@code /*}, still gets JSON.
+ */
+@Component
+public class BinaryFormatConverters implements WebMvcConfigurer {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Value("${http.binary-formats.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring MVC registers untimed Smile/CBOR converters whenever the formats are on the classpath
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+            || converter instanceof MappingJackson2CborHttpMessageConverter);
+        if (!enabled) {
+            return;
+        }
+        converters.add(new BinaryMessageConverter(objectMapper.copyWith(new SmileFactory()), queryMetrics,
+            BinaryMessageConverter.SMILE));
+        converters.add(new BinaryMessageConverter(objectMapper.copyWith(new CBORFactory()), queryMetrics,
+            BinaryMessageConverter.CBOR));
+        converters.add(new BinaryMessageConverter(objectMapper.copyWith(new MessagePackFactory()), queryMetrics,
+            BinaryMessageConverter.MSGPACK, BinaryMessageConverter.MSGPACK_ALIAS));
+    }
+}
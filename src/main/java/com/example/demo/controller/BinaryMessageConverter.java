@@ -0,0 +1,100 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.QueryResponse;
+import com.example.demo.services.QueryMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+/**
+ * Reads and writes bodies in a binary Jackson format (Smile, CBOR or MessagePack) for clients that
+ * ask for it with their Accept or Content-Type header. The DTOs and their annotations are the same
+ * as for JSON; only the encoding differs.
+ *
+ * <p>Bodies are encoded into a buffer first and sent with a Content-Length, so
+ * {@code server.compression.min-response-size} decides whether they are gzip-compressed. Like
+ * {@link TimedJsonMessageConverter}, writing a {@link QueryResponse} is timed as the
+ * {@code serialization} phase.
+ */
+public class BinaryMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+    public static final MediaType MSGPACK = MediaType.parseMediaType("application/x-msgpack");
+    public static final MediaType MSGPACK_ALIAS = MediaType.parseMediaType("application/msgpack");
+
+    private static final List<MediaType> BINARY_TYPES = List.of(SMILE, CBOR, MSGPACK, MSGPACK_ALIAS);
+
+    private final QueryMetrics queryMetrics;
+
+    public BinaryMessageConverter(ObjectMapper objectMapper, QueryMetrics queryMetrics, MediaType... mediaTypes) {
+        super(objectMapper, mediaTypes);
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Timer.Sample sample = object instanceof QueryResponse ? queryMetrics.start() : null;
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(8 * 1024);
+            super.writeInternal(object, type, new HttpOutputMessage() {
+                @Override
+                public OutputStream getBody() {
+                    return body;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return outputMessage.getHeaders();
+                }
+            });
+            outputMessage.getHeaders().setContentLength(body.size());
+            body.writeTo(outputMessage.getBody());
+        } finally {
+            if (sample != null) {
+                QueryResponse response = (QueryResponse) object;
+                queryMetrics.phase(sample, QueryMetrics.SERIALIZATION, response.getQueryType(), response.getRc());
+            }
+        }
+    }
+
+    /**
+     * Whether an {@code Accept} header prefers one of the binary formats over JSON. Types are
+     * taken by descending quality, in header order for equal quality, as content negotiation does.
+     */
+    public static boolean isPreferred(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() == 0) {
+                return false;
+            }
+            if (BINARY_TYPES.stream().anyMatch(mediaType::equalsTypeAndSubtype)) {
+                return true;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
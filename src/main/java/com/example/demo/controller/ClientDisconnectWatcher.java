@@ -0,0 +1,121 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.QueryResponse;
+import com.example.demo.services.QueryRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Cancels queries whose HTTP client has gone away.
+ *
+ * <p>Tomcat only notices a closed connection when it writes to it, so while a query is running
+ * a single space is written every {@code query.disconnect-check-ms}. Leading whitespace is valid
+ * JSON, and queries that finish within the interval send nothing extra. Once a write fails the
+ * query is cancelled, and its connection goes back to the pool instead of running to the end for
+ * nobody.
+ *
+ * <p>The first space commits the response: status 200 and {@code application/json}, whatever the
+ * result. Errors still reach the client as the {@code rc} of the body, but no later status or
+ * header can be set. {@code query.disconnect-check-ms=0} turns the heartbeat off.
+ *
+ * <p>Binary formats (Smile, CBOR, MessagePack) do not allow leading whitespace, so requests that
+ * negotiate one get no heartbeat. Their queries still end on timeout or explicit cancellation.
+ */
+@Component
+public class ClientDisconnectWatcher {
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Value("${query.disconnect-check-ms:2000}")
+    private long checkIntervalMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-disconnect-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Completes the request from {@code future}, cancelling query {@code queryId} if the client
+     * disconnects or the async request fails first.
+     */
+    public DeferredResult<QueryResponse> watch(HttpServletResponse response, String queryId,
+            CompletableFuture<QueryResponse> future) {
+        return watch(response, () -> queryRegistry.cancel(queryId), future);
+    }
+
+    /**
+     * Completes the request from {@code future}, running {@code cancel} if the client disconnects
+     * or the async request fails first.
+     */
+    public <T> DeferredResult<T> watch(HttpServletResponse response, Runnable cancel, CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.onError(error -> cancel.run());
+        result.onTimeout(cancel);
+
+        // Guards the response: no heartbeat may be written once the result is being sent.
+        Object lock = new Object();
+        boolean[] done = new boolean[1];
+        boolean heartbeatEnabled = checkIntervalMs > 0 && !binaryResponseRequested();
+        ScheduledFuture<?> heartbeat = !heartbeatEnabled ? null : scheduler.scheduleWithFixedDelay(() -> {
+            synchronized (lock) {
+                if (done[0]) {
+                    return;
+                }
+                try {
+                    if (!response.isCommitted()) {
+                        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    }
+                    response.getOutputStream().write(' ');
+                    response.flushBuffer();
+                } catch (IOException | IllegalStateException e) {
+                    done[0] = true;
+                    cancel.run();
+                }
+            }
+        }, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+
+        future.whenComplete((value, error) -> {
+            synchronized (lock) {
+                done[0] = true;
+            }
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+            if (error != null) {
+                result.setErrorResult(error);
+            } else {
+                result.setResult(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Whether the current request prefers a binary response format; called on the request thread.
+     */
+    private static boolean binaryResponseRequested() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+            && BinaryMessageConverter.isPreferred(attributes.getRequest().getHeader(HttpHeaders.ACCEPT));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
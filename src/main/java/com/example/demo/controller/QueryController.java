@@ -1,10 +1,40 @@
 package com.example.demo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.dto.*;
+import com.example.demo.services.AIBatchService;
+import com.example.demo.services.MultiQueryService;
+import com.example.demo.services.QueryExportService;
+import com.example.demo.services.QueryExportService.ExportFormat;
+import com.example.demo.services.QueryRegistry;
+import com.example.demo.services.QueryResultCache;
 import com.example.demo.services.QueryServices;
+import com.example.demo.services.QueryStatistics;
+import com.example.demo.services.QueryStreamingService;
+import com.example.demo.services.QueryStreamingService.StreamFormat;
+import com.example.demo.services.TranslationCache;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/query")
@@ -14,14 +44,310 @@ public class QueryController {
     @Autowired
     private QueryServices queryServices;
 
+    @Autowired
+    private QueryStreamingService queryStreamingService;
+
+    @Autowired
+    private QueryExportService queryExportService;
+
+    @Autowired
+    private AIBatchService aiBatchService;
+
+    @Autowired
+    private MultiQueryService multiQueryService;
+
+    @Autowired
+    private TranslationCache translationCache;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private ClientDisconnectWatcher disconnectWatcher;
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/execute")
-    public QueryResponse executeHumanQuery(@RequestParam("query") String sqlQuery) {
-        return queryServices.executeHumanQuery(sqlQuery);
+    public DeferredResult<QueryResponse> executeHumanQuery(@RequestParam("query") String sqlQuery,
+            @RequestParam(value = "resultFormat", required = false) String resultFormat,
+            @RequestParam(value = "queryId", required = false) String queryId,
+            @RequestParam(value = "timeoutSeconds", required = false) Integer timeoutSeconds,
+            HttpServletResponse response) {
+        String id = queryRegistry.resolveId(queryId);
+        return disconnectWatcher.watch(response, id,
+            queryServices.executeHumanQueryAsync(sqlQuery, resultFormat, id, timeoutSeconds));
+    }
+
+    @PostMapping("/execute/parameterized")
+    public DeferredResult<QueryResponse> executeParameterizedQuery(@RequestBody QueryRequest queryRequest,
+            HttpServletResponse response) {
+        queryRequest.setQueryId(queryRegistry.resolveId(queryRequest.getQueryId()));
+        return disconnectWatcher.watch(response, queryRequest.getQueryId(),
+            queryServices.executeParameterizedQueryAsync(queryRequest));
+    }
+
+    @PostMapping("/execute/multi")
+    public DeferredResult<MultiQueryResponse> executeMultiQuery(@RequestBody MultiQueryRequest multiQueryRequest,
+            HttpServletResponse response) {
+        String queryId = queryRegistry.resolveId(multiQueryRequest.getQueryId());
+        multiQueryRequest.setQueryId(queryId);
+        return disconnectWatcher.watch(response, () -> queryRegistry.cancel(queryId),
+            multiQueryService.executeAsync(multiQueryRequest));
     }
 
     @PostMapping("/ai-query")
-    public QueryResponse executeAIQuery(@RequestBody QueryRequest queryRequest) {
-        return queryServices.executeAIQuery(queryRequest);
+    public DeferredResult<QueryResponse> executeAIQuery(@RequestBody QueryRequest queryRequest,
+            HttpServletResponse response) {
+        queryRequest.setQueryId(queryRegistry.resolveId(queryRequest.getQueryId()));
+        return disconnectWatcher.watch(response, queryRequest.getQueryId(),
+            queryServices.executeAIQueryAsync(queryRequest));
+    }
+
+    @PostMapping("/ai-query/batch")
+    public DeferredResult<BatchQueryResponse> executeAIQueryBatch(@RequestBody BatchQueryRequest batchRequest,
+            HttpServletResponse response) {
+        CompletableFuture<BatchQueryResponse> batch = aiBatchService.executeBatchAsync(batchRequest);
+        return disconnectWatcher.watch(response, () -> batch.cancel(false), batch);
+    }
+
+    @PostMapping("/cancel/{queryId}")
+    public ResponseDTO cancelQuery(@PathVariable("queryId") String queryId) {
+        if (queryRegistry.cancel(queryId)) {
+            return new ResponseDTO("200", "Cancellation requested for query " + queryId + ".");
+        }
+        return new ResponseDTO("404", "No running query with id " + queryId + ".");
+    }
+
+    @GetMapping("/running")
+    public List<Map<String, Object>> runningQueries() {
+        return queryRegistry.list();
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<?> queryStatistics(@RequestParam(value = "top", defaultValue = "20") int top,
+            @RequestParam(value = "orderBy", defaultValue = "total_time") String orderBy) {
+        try {
+            return ResponseEntity.ok(queryStatistics.top(top, orderBy));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok(new ResponseDTO("400", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/stats/slow")
+    public List<Map<String, Object>> slowQueries() {
+        return queryStatistics.slowQueries();
+    }
+
+    @PostMapping("/stats/reset")
+    public ResponseDTO resetQueryStatistics() {
+        queryStatistics.reset();
+        return new ResponseDTO("200", "Query statistics reset.");
+    }
+
+    @GetMapping("/ai-cache/stats")
+    public Map<String, Object> translationCacheStats() {
+        return translationCache.stats();
+    }
+
+    @GetMapping("/result-cache/stats")
+    public Map<String, Object> resultCacheStats() {
+        return queryResultCache.stats();
+    }
+
+    @PostMapping("/execute/stream")
+    public ResponseEntity<StreamingResponseBody> streamHumanQuery(@RequestParam("query") String sqlQuery,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "queryId", required = false) String queryId,
+            @RequestParam(value = "timeoutSeconds", required = false) Integer timeoutSeconds,
+            HttpServletRequest request) {
+        StreamFormat streamFormat;
+        QueryRegistry.RunningQuery query;
+        try {
+            streamFormat = StreamFormat.from(format);
+            query = queryRegistry.register(queryId, "STREAM", timeoutSeconds);
+        } catch (IllegalArgumentException e) {
+            return jsonResponse(badRequest(e.getMessage(), "HUMAN"));
+        }
+        finishWhenRequestEnds(request, query);
+        StreamingResponseBody body = queued(query,
+            out -> queryStreamingService.streamQuery(sqlQuery, "HUMAN", streamFormat, out, query));
+        return streamResponse(streamFormat, query, body);
+    }
+
+    @PostMapping("/ai-query/stream")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> streamAIQuery(@RequestBody QueryRequest queryRequest,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletRequest request) {
+        StreamFormat streamFormat;
+        QueryRegistry.RunningQuery query;
+        try {
+            streamFormat = StreamFormat.from(format);
+            // Registered before Gemini is asked, so the query can be listed and cancelled meanwhile
+            query = queryRegistry.register(queryRequest.getQueryId(), "STREAM", queryRequest.getTimeoutSeconds());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(jsonResponse(badRequest(e.getMessage(), "AI")));
+        }
+        finishWhenRequestEnds(request, query);
+        return queryServices.translateAsync(queryRequest)
+            .thenCompose(translation -> {
+                QueryResponse generated = translation.response();
+                CompletableFuture<Boolean> guarded = "200".equals(generated.getRc())
+                    ? queryServices.applyCostGuardAsync(generated, query)
+                    : CompletableFuture.completedFuture(false);
+                return guarded.thenApply(run -> {
+                    if (!run) {
+                        queryRegistry.finish(query);
+                        generated.setQueryId(query.getId());
+                        return jsonResponse(generated);
+                    }
+                    StreamingResponseBody body = queued(query, out -> {
+                        String rc = queryStreamingService.streamQuery(generated.getExecutedQuery(), "AI", streamFormat, out, query);
+                        if ("200".equals(rc)) {
+                            queryServices.cacheTranslation(translation);
+                        }
+                    });
+                    return streamResponse(streamFormat, query, body);
+                });
+            })
+            .exceptionally(error -> {
+                queryRegistry.finish(query);
+                QueryResponse failed = new QueryResponse();
+                failed.setRc("500");
+                failed.setMessage("Failed to execute AI query: " + error.getMessage());
+                failed.setQueryType("AI");
+                failed.setQueryId(query.getId());
+                return jsonResponse(failed);
+            });
+    }
+
+    @PostMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportHumanQuery(@RequestParam("query") String sqlQuery,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "queryId", required = false) String queryId,
+            @RequestParam(value = "timeoutSeconds", required = false) Integer timeoutSeconds,
+            HttpServletRequest request, HttpServletResponse response) {
+        ExportFormat exportFormat;
+        QueryRegistry.RunningQuery query;
+        try {
+            exportFormat = ExportFormat.from(format);
+            query = queryRegistry.register(queryId, "EXPORT", timeoutSeconds);
+        } catch (IllegalArgumentException e) {
+            return jsonResponse(badRequest(e.getMessage(), "HUMAN"));
+        }
+        finishWhenRequestEnds(request, query);
+        StreamingResponseBody body = queued(query, out -> {
+            QueryResponse result = queryExportService.export(sqlQuery, "HUMAN", exportFormat, out, query);
+            if (!"200".equals(result.getRc())) {
+                exportFailed(response, out, result);
+            }
+        });
+        return ResponseEntity.ok()
+            .contentType(exportFormat.getMediaType())
+            .header("X-Query-Id", query.getId())
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("export." + exportFormat.getExtension())
+                .build()
+                .toString())
+            .body(body);
+    }
+
+    /**
+     * A failed export is answered with the usual JSON error while nothing has been sent yet.
+     * Afterwards the file can only be cut short: the connection is aborted, so clients see an
+     * incomplete download rather than a file that looks complete.
+     */
+    private void exportFailed(HttpServletResponse response, OutputStream out, QueryResponse result)
+            throws IOException {
+        if (response.isCommitted()) {
+            throw new IOException("Export of query " + result.getQueryId() + " failed after "
+                + result.getRowsAffected() + " rows: " + result.getMessage());
+        }
+        response.reset();
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader("X-Query-Id", result.getQueryId());
+        objectMapper.writeValue(out, result);
+    }
+
+    /**
+     * {@code body}, with the time until a stream thread picks it up counted as queue time of
+     * {@code query}.
+     */
+    private static StreamingResponseBody queued(QueryRegistry.RunningQuery query, StreamingResponseBody body) {
+        long queuedAt = System.nanoTime();
+        query.queued();
+        return out -> {
+            query.started(queuedAt);
+            body.writeTo(out);
+        };
+    }
+
+    /**
+     * Cancels and finishes {@code query} when the async request ends, also if its body never ran
+     * or was cut off. A body waiting for a stream thread is dropped when
+     * {@code spring.mvc.async.request-timeout} expires; the query would otherwise stay listed as
+     * queued and keep its queryId taken. Cancelling a query whose body has completed does nothing.
+     * A request that times out or fails before its body is handed over (an AI stream still
+     * waiting for Gemini) is covered by the deferred result callbacks.
+     */
+    private void finishWhenRequestEnds(HttpServletRequest request, QueryRegistry.RunningQuery query) {
+        Runnable stop = () -> {
+            query.cancel();
+            queryRegistry.finish(query);
+        };
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.registerCallableInterceptor(query, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                stop.run();
+            }
+        });
+        asyncManager.registerDeferredResultInterceptor(query, new DeferredResultProcessingInterceptor() {
+            @Override
+            public <T> boolean handleTimeout(NativeWebRequest webRequest, DeferredResult<T> deferredResult) {
+                stop.run();
+                return true;
+            }
+
+            @Override
+            public <T> boolean handleError(NativeWebRequest webRequest, DeferredResult<T> deferredResult,
+                    Throwable t) {
+                stop.run();
+                return true;
+            }
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamResponse(StreamFormat format, QueryRegistry.RunningQuery query,
+            StreamingResponseBody body) {
+        return ResponseEntity.ok()
+            .contentType(format.getMediaType())
+            .header("X-Query-Id", query.getId())
+            .body(body);
+    }
+
+    private QueryResponse badRequest(String message, String queryType) {
+        QueryResponse response = new QueryResponse();
+        response.setRc("400");
+        response.setMessage(message);
+        response.setQueryType(queryType);
+        return response;
+    }
+
+    /**
+     * Streaming endpoints must return a StreamingResponseBody, so plain responses (errors raised
+     * before streaming starts) are written the same way.
+     */
+    private ResponseEntity<StreamingResponseBody> jsonResponse(QueryResponse response) {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> objectMapper.writeValue(out, response));
     }
 
-}
\ No newline at end of file
+}
@@ -1,8 +1,12 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.BulkLoadResponse;
 import com.example.demo.dto.InsertData;
+import com.example.demo.dto.InsertResponse;
 import com.example.demo.dto.ResponseDTO;
 import com.example.demo.services.TableDataService;
+import java.io.InputStream;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,9 +19,32 @@ public class TableDataController {
 
 
   @PostMapping("/insert")
-  public ResponseDTO insert(@RequestBody InsertData data) {
+  public InsertResponse insert(@RequestBody InsertData data) {
     return tableDataService.insertData(data);
   }
 
+  /**
+   * Inserts a columnar JSON body ({@code tableName}, {@code columns}, then {@code rows} as value
+   * arrays) while it is parsed, in fixed-size batches.
+   */
+  @PostMapping("/insert/stream")
+  public ResponseDTO insertStream(InputStream body) {
+    return tableDataService.insertDataStream(body);
+  }
+
+  /**
+   * Bulk loads a CSV or NDJSON request body through PostgreSQL COPY. The body is streamed to the
+   * database as it arrives.
+   */
+  @PostMapping("/copy")
+  public BulkLoadResponse copy(
+      @RequestParam("tableName") String tableName,
+      @RequestParam(value = "columns", required = false) List<String> columns,
+      @RequestParam(value = "format", defaultValue = "csv") String format,
+      @RequestParam(value = "header", defaultValue = "false") boolean header,
+      InputStream body) {
+    return tableDataService.copyData(tableName, columns, format, header, body);
+  }
+
 
 }
@@ -0,0 +1,42 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.QueryResponse;
+import com.example.demo.services.QueryMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+/**
+ * The application's JSON converter (it replaces Spring Boot's default one). It times the writing
+ * of {@link QueryResponse} bodies as the {@code serialization} phase of the query metrics. Large
+ * results spend a noticeable share of their time here, and that time is not part of
+ * {@code executionTimeMs}.
+ */
+@Component
+public class TimedJsonMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final QueryMetrics queryMetrics;
+
+    public TimedJsonMessageConverter(ObjectMapper objectMapper, QueryMetrics queryMetrics) {
+        super(objectMapper);
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (!(object instanceof QueryResponse response)) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        Timer.Sample sample = queryMetrics.start();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            queryMetrics.phase(sample, QueryMetrics.SERIALIZATION, response.getQueryType(), response.getRc());
+        }
+    }
+}
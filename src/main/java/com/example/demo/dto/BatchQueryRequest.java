@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A batch of natural language queries for /query/ai-query/batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchQueryRequest {
+
+    /**
+     * The queries, each as for /query/ai-query (naturalLanguageQuery, tableNames, resultFormat,
+     * queryId, timeoutSeconds).
+     */
+    private List<QueryRequest> queries;
+
+    /**
+     * Optional limit on the statements of this batch running at the same time; it cannot exceed
+     * query.ai.batch.max-parallel.
+     */
+    private Integer maxParallel;
+}
@@ -0,0 +1,46 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response of /query/ai-query/batch: the usual rc/message for the batch as a whole, plus one
+ * response per query, in request order, each with its own rc and message.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class BatchQueryResponse extends ResponseDTO {
+
+    /**
+     * One response per query, in the order of the request
+     */
+    private List<QueryResponse> results;
+
+    /**
+     * Queries whose rc is 200
+     */
+    private Integer succeeded;
+
+    /**
+     * Queries that failed or were rejected
+     */
+    private Integer failed;
+
+    /**
+     * Requests made to the LLM for the whole batch
+     */
+    private Integer llmCalls;
+
+    /**
+     * Queries whose SQL came from the translation cache
+     */
+    private Integer translationCacheHits;
+
+    /**
+     * Wall-clock time of the whole batch in milliseconds
+     */
+    private Long executionTimeMs;
+}
@@ -0,0 +1,34 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response of a bulk load through PostgreSQL COPY, with the usual rc/message plus throughput figures.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class BulkLoadResponse extends ResponseDTO {
+
+    /**
+     * Number of rows written by COPY
+     */
+    private Long rowsLoaded;
+
+    /**
+     * Number of request body bytes read
+     */
+    private Long bytesRead;
+
+    /**
+     * Wall-clock time of the load in milliseconds
+     */
+    private Long elapsedMs;
+
+    /**
+     * Rows loaded per second over the whole load
+     */
+    private Long rowsPerSecond;
+}
@@ -24,6 +24,18 @@ public class InsertData {
      */
     private List<List<ColumnData>> rows;
 
+    /**
+     * Optional number of rows sent to the database per batch. Defaults to tabledata.insert.chunk-size.
+     */
+    private Integer chunkSize;
+
+    /**
+     * When true, every chunk is committed in its own transaction: a failing chunk is rolled back
+     * and reported while the other chunks are kept. When false (default), all rows are inserted in
+     * one transaction and any failure rolls back the whole request.
+     */
+    private Boolean commitPerChunk;
+
     /**
      * A static inner class to represent a single column's name and its corresponding value.
      */
@@ -0,0 +1,65 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response of a chunked insert: the usual rc/message plus per-chunk outcome, so a partially
+ * committed load can be resumed from the failed chunks.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class InsertResponse extends ResponseDTO {
+
+    /**
+     * Number of rows committed
+     */
+    private Long rowsInserted;
+
+    /**
+     * Rows per chunk used for this request
+     */
+    private Integer chunkSize;
+
+    /**
+     * Number of chunks the rows were split into
+     */
+    private Integer totalChunks;
+
+    /**
+     * Chunks that failed (and were rolled back); empty when every chunk was committed
+     */
+    private List<FailedChunk> failedChunks;
+
+    /**
+     * A chunk that could not be inserted.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FailedChunk {
+        /**
+         * Zero-based index of the chunk
+         */
+        private int chunkIndex;
+
+        /**
+         * Zero-based index of the chunk's first row in the request
+         */
+        private long firstRow;
+
+        /**
+         * Number of rows in the chunk
+         */
+        private int rowCount;
+
+        /**
+         * Database error that made the chunk fail
+         */
+        private String error;
+    }
+}
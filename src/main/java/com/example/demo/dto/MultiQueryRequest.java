@@ -0,0 +1,46 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Several SQL statements for /query/execute/multi, answered in one response.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiQueryRequest {
+
+    /**
+     * The statements, in order; one statement per entry.
+     */
+    private List<String> statements;
+
+    /**
+     * "pipeline" (default): one after the other on a single connection. "parallel": the
+     * statements are independent and run at the same time on separate pooled connections.
+     */
+    private String mode;
+
+    /**
+     * Pipeline only: run all statements in one transaction, rolled back as a whole when one fails.
+     */
+    private Boolean transaction;
+
+    /**
+     * Result format of every result set: "rows" (default), "compact" or "columnar".
+     */
+    private String resultFormat;
+
+    /**
+     * Optional client-chosen ID; cancelling it cancels every statement of the request.
+     */
+    private String queryId;
+
+    /**
+     * Optional timeout in seconds for each statement.
+     */
+    private Integer timeoutSeconds;
+}
@@ -0,0 +1,51 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response of /query/execute/multi: rc/message for the request, plus one response per statement,
+ * in request order, each with its own rc, message, result set and executionTimeMs.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class MultiQueryResponse extends ResponseDTO {
+
+    /**
+     * ID under which the statements ran, for /query/cancel/{queryId}
+     */
+    private String queryId;
+
+    /**
+     * "pipeline" or "parallel"
+     */
+    private String mode;
+
+    /**
+     * Whether the statements ran in one transaction
+     */
+    private Boolean transaction;
+
+    /**
+     * One response per statement, in the order of the request
+     */
+    private List<QueryResponse> results;
+
+    /**
+     * Statements whose rc is 200
+     */
+    private Integer succeeded;
+
+    /**
+     * Statements that failed or did not run
+     */
+    private Integer failed;
+
+    /**
+     * Wall-clock time of the whole request in milliseconds
+     */
+    private Long executionTimeMs;
+}
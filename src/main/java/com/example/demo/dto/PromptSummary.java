@@ -0,0 +1,50 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Size and content of the prompt sent to the LLM for an AI query, after schema pruning.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromptSummary {
+
+    /**
+     * "requested" when the tables came from tableNames, "auto" when they were picked by relevance
+     */
+    private String tableSelection;
+
+    /**
+     * Tables described in the prompt
+     */
+    private List<String> tables;
+
+    /**
+     * Columns described in the prompt
+     */
+    private Integer columnsIncluded;
+
+    /**
+     * Columns of those tables left out as least relevant to stay within the token budget
+     */
+    private Integer columnsOmitted;
+
+    /**
+     * Length of the prompt JSON in characters
+     */
+    private Integer characters;
+
+    /**
+     * Estimated prompt tokens (about four characters per token)
+     */
+    private Integer estimatedTokens;
+
+    /**
+     * Token budget the prompt was pruned to, or null when unlimited
+     */
+    private Integer tokenBudget;
+}
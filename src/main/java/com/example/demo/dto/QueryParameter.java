@@ -0,0 +1,30 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A typed bind parameter for a parameterized query. Referenced in the SQL template as {@code :name}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryParameter {
+
+    /**
+     * Parameter name as used in the template, without the leading colon (e.g. "minScore").
+     */
+    private String name;
+
+    /**
+     * SQL type of the value: text, integer, bigint, numeric, double, boolean, date, time,
+     * timestamp, timestamptz, uuid or json. Defaults to the JSON type of the value when omitted.
+     */
+    private String type;
+
+    /**
+     * The value to bind. Dates and times are ISO-8601 strings; a JSON array binds a list for IN (:name).
+     */
+    private Object value;
+}
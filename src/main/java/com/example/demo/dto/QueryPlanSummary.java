@@ -0,0 +1,45 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Planner estimates for an AI-generated statement, taken from the top node of
+ * {@code EXPLAIN (FORMAT JSON)} before it runs.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlanSummary {
+
+    /**
+     * Top plan node, e.g. "Seq Scan", "Hash Join", "Limit"
+     */
+    private String nodeType;
+
+    /**
+     * Estimated cost until the first row is returned, in planner cost units
+     */
+    private Double startupCost;
+
+    /**
+     * Estimated total cost, in planner cost units
+     */
+    private Double totalCost;
+
+    /**
+     * Estimated number of rows returned
+     */
+    private Long planRows;
+
+    /**
+     * What the cost guard did: "accepted", "limited" (a LIMIT was added) or "rejected"
+     */
+    private String action;
+
+    /**
+     * The LIMIT added by the cost guard, when action is "limited"
+     */
+    private Long appliedLimit;
+}
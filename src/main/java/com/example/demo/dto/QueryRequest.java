@@ -36,4 +36,31 @@ public class QueryRequest {
      */
     private String queryType;
 
+    /**
+     * Result format: "rows" (default), "compact" or "columnar". See {@link ResultFormat}.
+     */
+    private String resultFormat;
+
+    /**
+     * SQL with named parameters for parameterized execution, e.g.
+     * "SELECT * FROM users WHERE score > :minScore". Values are bound, never spliced into the SQL.
+     */
+    private String sqlTemplate;
+
+    /**
+     * Values for the named parameters of {@link #sqlTemplate}.
+     */
+    private List<QueryParameter> parameters;
+
+    /**
+     * Optional client-chosen ID for cancelling the query through /query/cancel/{queryId}.
+     * Generated when omitted and returned in the response.
+     */
+    private String queryId;
+
+    /**
+     * Optional statement timeout in seconds, overriding the default of the query type.
+     */
+    private Integer timeoutSeconds;
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import java.util.Map;
 import lombok.AllArgsConstructor;
@@ -37,6 +38,30 @@ public class QueryResponse {
      */
     private List<String> columns;
 
+    /**
+     * Database type name of each column, in the same order as {@link #columns}
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> columnTypes;
+
+    /**
+     * Result format used for this response (ROWS, COMPACT or COLUMNAR)
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resultFormat;
+
+    /**
+     * COMPACT format: query results as positional arrays in {@link #columns} order
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Object[]> rows;
+
+    /**
+     * COLUMNAR format: one array per column in {@link #columns} order
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Object> columnData;
+
     /**
      * Number of rows affected (for INSERT, UPDATE, DELETE)
      */
@@ -57,4 +82,41 @@ public class QueryResponse {
      */
     private String queryType;
 
+    /**
+     * For AI-enhanced queries: true when the SQL came from the translation cache instead of the LLM
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean translationCached;
+
+    /**
+     * For AI-enhanced queries: true when the SQL came from an identical request that was already
+     * waiting for the LLM
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean translationShared;
+
+    /**
+     * True when the result was served from the query result cache instead of the database
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean resultCached;
+
+    /**
+     * ID the query ran under; can be passed to /query/cancel/{queryId} while it runs
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String queryId;
+
+    /**
+     * For AI-enhanced queries: planner estimates checked by the cost guard before execution
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private QueryPlanSummary plan;
+
+    /**
+     * For AI-enhanced queries: size of the prompt sent to the LLM and the schema it described
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PromptSummary prompt;
+
 }
@@ -0,0 +1,36 @@
+package com.example.demo.dto;
+
+import java.util.Locale;
+
+/**
+ * Shape of the result set returned in a {@link QueryResponse}.
+ */
+public enum ResultFormat {
+
+    /**
+     * Default: "data" holds one map per row (column name to value).
+     */
+    ROWS,
+
+    /**
+     * "columns" once, then "rows" as positional arrays in column order.
+     */
+    COMPACT,
+
+    /**
+     * "columns" once, then "columnData" with one array per column. Integer, floating point and
+     * boolean columns without NULLs are encoded as primitive arrays.
+     */
+    COLUMNAR;
+
+    public static ResultFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return ROWS;
+        }
+        try {
+            return ResultFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported result format: " + value);
+        }
+    }
+}
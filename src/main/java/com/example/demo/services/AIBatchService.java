@@ -0,0 +1,448 @@
+package com.example.demo.services;
+
+import com.example.demo.client.GeminiClient;
+import com.example.demo.dto.AIQuery;
+import com.example.demo.dto.BatchQueryRequest;
+import com.example.demo.dto.BatchQueryResponse;
+import com.example.demo.dto.PromptSummary;
+import com.example.demo.dto.QueryRequest;
+import com.example.demo.dto.QueryResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs a batch of natural language queries for /query/ai-query/batch.
+ *
+ * <ul>
+ *   <li>The schemas of all queries are fetched with one lookup for the union of their tables
+ *       (plus the table list if a query names no tables).</li>
+ *   <li>Questions already in the translation cache skip the LLM. The others, identical ones
+ *       counted once, are sent {@code questions-per-call} at a time in one prompt that asks for a
+ *       JSON array of {@code {id, sql}}; these calls run concurrently. A question missing from
+ *       the answer is retried on its own through {@link QueryServices#translateAsync}.</li>
+ *   <li>Answers are only added to the translation cache once their statement has run
+ *       successfully, and only if the prompt held that one question: with several, a wrong id
+ *       in the answer would cache one question's SQL under another question's key.</li>
+ *   <li>Each statement goes through the cost guard and runs as soon as its SQL is known, with at
+ *       most {@code max-parallel} statements of the batch running at once, so a batch takes
+ *       about as long as its slowest query without taking over the connection pool.</li>
+ * </ul>
+ *
+ * Every query is registered under its own queryId and can be cancelled on its own; a failing
+ * query only fails its own entry of the response.
+ */
+@Service
+public class AIBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(AIBatchService.class);
+
+    private static final String BATCH_REQUIREMENT =
+        "Answer every question with a single clean PostgreSQL statement of its own.";
+
+    private static final String BATCH_RETURN_TYPE =
+        "A JSON array in one ```json code block with one object per question, "
+            + "{\"id\": <question id>, \"sql\": \"<PostgreSQL query>\"}.";
+
+    @Autowired
+    private QueryServices queryServices;
+
+    @Autowired
+    private SchemaService schemaService;
+
+    @Autowired
+    private TranslationCache translationCache;
+
+    @Autowired
+    private PromptCompactor promptCompactor;
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private QueryExecutor queryExecutor;
+
+    @Value("${query.ai.batch.max-size:50}")
+    private int maxSize;
+
+    /** Questions sent to the LLM in one prompt. */
+    @Value("${query.ai.batch.questions-per-call:10}")
+    private int questionsPerCall;
+
+    /** Statements of one batch running at the same time. */
+    @Value("${query.ai.batch.max-parallel:4}")
+    private int maxParallel;
+
+    /**
+     * One query of a batch while it is translated and run.
+     */
+    private static final class Item {
+
+        private final int id;
+        private final QueryRequest request;
+        private final Timer.Sample sample;
+        private QueryResponse response = new QueryResponse();
+        private QueryRegistry.RunningQuery query;
+        private Map<String, Map<String, Map<String, Object>>> tableSchemas;
+        private List<String> tableNames;
+        private String cacheKey;
+        /** Translation to cache once the statement has run successfully. */
+        private QueryServices.GeneratedQuery uncached;
+        private CompletableFuture<Void> translated = CompletableFuture.completedFuture(null);
+
+        private Item(int id, QueryRequest request, Timer.Sample sample) {
+            this.id = id;
+            this.request = request;
+            this.sample = sample;
+            response.setQueryType("AI");
+        }
+
+        private boolean pending() {
+            return response.getRc() == null;
+        }
+
+        private void fail(String rc, String message) {
+            response.setRc(rc);
+            response.setMessage(message);
+        }
+    }
+
+    public CompletableFuture<BatchQueryResponse> executeBatchAsync(BatchQueryRequest batchRequest) {
+        long startTime = System.currentTimeMillis();
+        List<QueryRequest> requests = batchRequest == null ? null : batchRequest.getQueries();
+        if (requests == null || requests.isEmpty()) {
+            return CompletableFuture.completedFuture(rejected("At least one query is required.", startTime));
+        }
+        if (requests.size() > maxSize) {
+            return CompletableFuture.completedFuture(
+                rejected("A batch can hold at most " + maxSize + " queries.", startTime));
+        }
+        if (batchRequest.getMaxParallel() != null && batchRequest.getMaxParallel() < 1) {
+            return CompletableFuture.completedFuture(rejected("maxParallel must be at least 1.", startTime));
+        }
+        int parallelism = Math.max(1, batchRequest.getMaxParallel() == null
+            ? maxParallel : Math.min(batchRequest.getMaxParallel(), maxParallel));
+
+        List<Item> items = new ArrayList<>();
+        for (QueryRequest request : requests) {
+            Item item = new Item(items.size() + 1, request, queryMetrics.start());
+            items.add(item);
+            if (request == null || request.getNaturalLanguageQuery() == null
+                || request.getNaturalLanguageQuery().trim().isEmpty()) {
+                item.fail("400", "Natural language query is required for AI generation.");
+                continue;
+            }
+            try {
+                item.query = queryRegistry.register(request.getQueryId(), "AI", request.getTimeoutSeconds());
+            } catch (IllegalArgumentException e) {
+                item.fail("400", e.getMessage());
+            }
+        }
+        List<Item> pending = items.stream().filter(Item::pending).toList();
+
+        Timer.Sample schemaSample = queryMetrics.start();
+        try {
+            resolveSchemas(pending);
+            queryMetrics.phase(schemaSample, QueryMetrics.SCHEMA_FETCH, "AI", "200");
+        } catch (Exception e) {
+            queryMetrics.phase(schemaSample, QueryMetrics.SCHEMA_FETCH, "AI", "500");
+            pending.forEach(item -> item.fail("500", "Failed to execute AI query: " + e.getMessage()));
+        }
+
+        // Cache hits are done; identical questions among the misses are asked once
+        AtomicInteger cacheHits = new AtomicInteger();
+        Map<String, List<Item>> questions = new LinkedHashMap<>();
+        for (Item item : items) {
+            if (!item.pending()) {
+                continue;
+            }
+            TranslationCache.Translation cached = translationCache.get(item.cacheKey);
+            if (cached != null) {
+                generated(item, cached.generatedSql(), cached.cleanedSql(), true);
+                cacheHits.incrementAndGet();
+            } else {
+                questions.computeIfAbsent(item.cacheKey, key -> new ArrayList<>()).add(item);
+            }
+        }
+
+        AtomicInteger llmCalls = new AtomicInteger();
+        List<List<Item>> groups = new ArrayList<>(questions.values());
+        int perCall = Math.max(1, questionsPerCall);
+        for (int from = 0; from < groups.size(); from += perCall) {
+            List<List<Item>> chunk = groups.subList(from, Math.min(from + perCall, groups.size()));
+            CompletableFuture<Void> translated = translate(chunk, llmCalls);
+            chunk.forEach(group -> group.forEach(item -> item.translated = translated));
+        }
+
+        // Each statement starts as soon as its own SQL is known
+        BoundedExecutor lanes = new BoundedExecutor(parallelism);
+        List<CompletableFuture<QueryResponse>> results = new ArrayList<>();
+        for (Item item : items) {
+            results.add(item.translated
+                .thenCompose(ignored -> item.query == null || !"200".equals(item.response.getRc())
+                    ? CompletableFuture.completedFuture(item.response)
+                    : lanes.submit(() -> queryExecutor.submit(item.query,
+                        () -> queryServices.executeGeneratedQuery(item.request, item.response, startTime, item.query))))
+                .exceptionally(error -> {
+                    if (QueryExecutor.isRejected(error)) {
+                        item.fail("503", queryExecutor.rejectionMessage());
+                        return item.response;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                    item.fail("500", "Failed to execute AI query: " + cause.getMessage());
+                    return item.response;
+                })
+                .whenComplete((response, error) -> {
+                    if (response.getExecutionTimeMs() == null) {
+                        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+                    }
+                    if (item.query != null) {
+                        response.setQueryId(item.query.getId());
+                        queryRegistry.finish(item.query);
+                    }
+                    if (item.uncached != null && "200".equals(response.getRc())) {
+                        queryServices.cacheTranslation(item.uncached);
+                    }
+                    queryMetrics.query(item.sample, "AI", response);
+                }));
+        }
+
+        CompletableFuture<?>[] all = results.toArray(new CompletableFuture[0]);
+        CompletableFuture<BatchQueryResponse> batchResult = CompletableFuture.allOf(all).thenApply(done -> {
+            BatchQueryResponse batch = new BatchQueryResponse();
+            batch.setResults(results.stream().map(CompletableFuture::join).toList());
+            int succeeded = (int) batch.getResults().stream().filter(response -> "200".equals(response.getRc())).count();
+            batch.setRc("200");
+            batch.setMessage("Batch completed: " + succeeded + " of " + items.size() + " queries succeeded.");
+            batch.setSucceeded(succeeded);
+            batch.setFailed(items.size() - succeeded);
+            batch.setLlmCalls(llmCalls.get());
+            batch.setTranslationCacheHits(cacheHits.get());
+            batch.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return batch;
+        });
+        // Cancelling the batch (e.g. the client went away) cancels all of its queries
+        batchResult.whenComplete((batch, error) -> {
+            if (error instanceof CancellationException) {
+                items.stream().filter(item -> item.query != null).forEach(item -> item.query.cancel());
+            }
+        });
+        return batchResult;
+    }
+
+    /**
+     * Looks up the schemas of all queries at once and picks each query's tables from them.
+     */
+    private void resolveSchemas(List<Item> items) {
+        Set<String> requested = new LinkedHashSet<>();
+        boolean autoSelect = false;
+        for (Item item : items) {
+            List<String> tableNames = item.request.getTableNames();
+            if (tableNames == null || tableNames.isEmpty()) {
+                autoSelect = true;
+            } else {
+                requested.addAll(tableNames);
+            }
+        }
+
+        Map<String, Map<String, Map<String, Object>>> allSchemas = autoSelect
+            ? schemaService.getAllTableSchemas() : Map.of();
+        Map<String, Map<String, Map<String, Object>>> schemas = new HashMap<>(allSchemas);
+        List<String> missing = requested.stream().filter(name -> !schemas.containsKey(name)).toList();
+        if (!missing.isEmpty()) {
+            schemas.putAll(schemaService.getListOfTableSchemas(missing));
+        }
+
+        for (Item item : items) {
+            String question = item.request.getNaturalLanguageQuery();
+            List<String> tableNames = item.request.getTableNames();
+            if (tableNames == null || tableNames.isEmpty()) {
+                item.tableSchemas = promptCompactor.selectTables(question, allSchemas);
+            } else {
+                item.tableSchemas = new LinkedHashMap<>();
+                tableNames.forEach(name -> item.tableSchemas.put(name, schemas.get(name)));
+            }
+            item.tableNames = new ArrayList<>(item.tableSchemas.keySet());
+            item.cacheKey = translationCache.key(question, item.tableNames, item.tableSchemas);
+        }
+    }
+
+    /**
+     * Asks the LLM for the SQL of several questions in one prompt. Each inner list holds the
+     * queries that share one question.
+     */
+    private CompletableFuture<Void> translate(List<List<Item>> chunk, AtomicInteger llmCalls) {
+        String promptJson;
+        Timer.Sample promptSample = queryMetrics.start();
+        try {
+            promptJson = objectMapper.writeValueAsString(batchPrompt(chunk));
+            queryMetrics.phase(promptSample, QueryMetrics.PROMPT_BUILD, "AI", "200");
+        } catch (JsonProcessingException | RuntimeException e) {
+            queryMetrics.phase(promptSample, QueryMetrics.PROMPT_BUILD, "AI", "500");
+            chunk.forEach(group -> group.forEach(item -> item.fail("500", "Failed to build AI prompt: " + e.getMessage())));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        llmCalls.incrementAndGet();
+        Timer.Sample llmSample = queryMetrics.start();
+        return geminiClient.generateSqlAsync(promptJson).handle((text, error) -> {
+            queryMetrics.phase(llmSample, QueryMetrics.LLM_CALL, "AI", error == null ? "200" : "500");
+            List<List<Item>> unanswered = new ArrayList<>();
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                chunk.forEach(group -> group.forEach(item -> item.fail("500", "Failed to execute AI query: " + cause.getMessage())));
+                return unanswered;
+            }
+
+            Map<Integer, String> answers = parseAnswers(text);
+            for (List<Item> group : chunk) {
+                Item first = group.get(0);
+                String generatedSql = answers.get(first.id);
+                if (generatedSql == null) {
+                    unanswered.add(group);
+                    continue;
+                }
+                String cleanedSql = QueryServices.normalizeGeneratedSql(generatedSql);
+                group.forEach(item -> generated(item, generatedSql, cleanedSql, false));
+                if (chunk.size() == 1) {
+                    first.uncached = new QueryServices.GeneratedQuery(first.response, first.cacheKey,
+                        new TranslationCache.Translation(generatedSql, cleanedSql, first.tableNames));
+                }
+            }
+            return unanswered;
+        }).thenCompose(unanswered -> {
+            if (!unanswered.isEmpty()) {
+                log.warn("LLM answer left {} of {} batch questions unanswered; asking them one by one",
+                    unanswered.size(), chunk.size());
+            }
+            List<CompletableFuture<Void>> retries = new ArrayList<>();
+            for (List<Item> group : unanswered) {
+                retries.add(queryServices.translateAsync(group.get(0).request).thenAccept(translation -> {
+                    QueryResponse generated = translation.response();
+                    group.get(0).uncached = translation;
+                    if (!Boolean.TRUE.equals(generated.getTranslationCached())
+                        && !Boolean.TRUE.equals(generated.getTranslationShared())) {
+                        llmCalls.incrementAndGet();
+                    }
+                    for (Item item : group) {
+                        QueryResponse response = new QueryResponse();
+                        response.setQueryType("AI");
+                        response.setRc(generated.getRc());
+                        response.setMessage(generated.getMessage());
+                        response.setGeneratedSql(generated.getGeneratedSql());
+                        response.setExecutedQuery(generated.getExecutedQuery());
+                        response.setTranslationCached(generated.getTranslationCached());
+                        response.setPrompt(generated.getPrompt());
+                        item.response = response;
+                    }
+                }));
+            }
+            return CompletableFuture.allOf(retries.toArray(new CompletableFuture[0]));
+        });
+    }
+
+    private Map<String, Object> batchPrompt(List<List<Item>> chunk) throws JsonProcessingException {
+        Map<String, Map<String, Map<String, Object>>> tableSchemas = new LinkedHashMap<>();
+        List<Map<String, Object>> questions = new ArrayList<>();
+        for (List<Item> group : chunk) {
+            Item item = group.get(0);
+            tableSchemas.putAll(item.tableSchemas);
+            Map<String, Object> question = new LinkedHashMap<>();
+            question.put("id", item.id);
+            question.put("question", item.request.getNaturalLanguageQuery());
+            question.put("table_names", item.tableNames);
+            questions.add(question);
+        }
+
+        AIQuery defaults = AIQuery.withDefaults(null, null);
+        // The first default asks for one statement for the whole prompt
+        List<String> requirements = new ArrayList<>(defaults.getRequirements());
+        requirements.set(0, BATCH_REQUIREMENT);
+
+        Map<String, Object> prompt = new LinkedHashMap<>();
+        prompt.put("requirements", requirements);
+        prompt.put("security", defaults.getSecurityGuards());
+        prompt.put("database_type", defaults.getDatabaseType());
+        prompt.put("table_names", new ArrayList<>(tableSchemas.keySet()));
+        prompt.put("questions", questions);
+        prompt.put("expected_return_type", BATCH_RETURN_TYPE);
+
+        // The schema description gets what the rest of the prompt leaves of the token budget
+        int fixedChars = objectMapper.writeValueAsString(prompt).length() + "\"table_schemas\":\"\",".length();
+        String allQuestions = chunk.stream()
+            .map(group -> group.get(0).request.getNaturalLanguageQuery())
+            .collect(Collectors.joining(" "));
+        prompt.put("table_schemas",
+            promptCompactor.describe(allQuestions, tableSchemas, fixedChars, false, new PromptSummary()));
+        return prompt;
+    }
+
+    /**
+     * SQL by question id from the JSON array in the LLM's answer; empty if there is none.
+     */
+    Map<Integer, String> parseAnswers(String text) {
+        Map<Integer, String> answers = new HashMap<>();
+        int start = text.indexOf('[');
+        int end = text.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            return answers;
+        }
+        try {
+            for (JsonNode answer : objectMapper.readTree(text.substring(start, end + 1))) {
+                int id = answer.path("id").asInt(-1);
+                String sql = answer.path("sql").asText("");
+                if (id > 0 && !sql.isBlank()) {
+                    answers.put(id, sql.strip());
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable batch answer from the LLM: {}", e.getOriginalMessage());
+        }
+        return answers;
+    }
+
+    private static void generated(Item item, String generatedSql, String cleanedSql, boolean cached) {
+        item.response.setRc("200");
+        item.response.setMessage("AI query generated successfully.");
+        item.response.setGeneratedSql(generatedSql);
+        item.response.setExecutedQuery(cleanedSql);
+        item.response.setTranslationCached(cached);
+    }
+
+    private static BatchQueryResponse rejected(String message, long startTime) {
+        BatchQueryResponse batch = new BatchQueryResponse();
+        batch.setRc("400");
+        batch.setMessage(message);
+        batch.setResults(List.of());
+        batch.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return batch;
+    }
+}
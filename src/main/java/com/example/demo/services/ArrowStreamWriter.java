@@ -0,0 +1,488 @@
+package com.example.demo.services;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+import org.apache.arrow.flatbuf.Bool;
+import org.apache.arrow.flatbuf.Buffer;
+import org.apache.arrow.flatbuf.Date;
+import org.apache.arrow.flatbuf.DateUnit;
+import org.apache.arrow.flatbuf.Decimal;
+import org.apache.arrow.flatbuf.Endianness;
+import org.apache.arrow.flatbuf.Field;
+import org.apache.arrow.flatbuf.FieldNode;
+import org.apache.arrow.flatbuf.FloatingPoint;
+import org.apache.arrow.flatbuf.Int;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.MetadataVersion;
+import org.apache.arrow.flatbuf.Precision;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.flatbuf.Schema;
+import org.apache.arrow.flatbuf.TimeUnit;
+import org.apache.arrow.flatbuf.Timestamp;
+import org.apache.arrow.flatbuf.Type;
+import org.apache.arrow.flatbuf.Utf8;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Writes a result set in the Arrow IPC streaming format: a schema message, one record batch per
+ * {@code batchSize} rows, and the end-of-stream marker. Readers such as pyarrow, Polars or DuckDB
+ * open it directly.
+ *
+ * <p>Column buffers are filled with primitive reads ({@code getInt}, {@code getDouble}, ...) and
+ * reused for every batch, so memory is bounded by one batch whatever the size of the result.
+ * Only the message metadata comes from the Arrow format definitions; the Arrow Java vector library
+ * is not needed.
+ *
+ * <p>Types: smallint, integer and bigint map to Int16/32/64, real and double precision to
+ * Float32/64, boolean to Bool, date to Date32, timestamp and timestamptz to microsecond Timestamps
+ * (timestamptz in UTC), numeric with a declared precision of at most 38 to Decimal128. Everything
+ * else, including unconstrained numeric, is Utf8 in PostgreSQL's text representation. Infinite
+ * dates and timestamps are written as NULL.
+ */
+final class ArrowStreamWriter implements ExportWriter {
+
+    /** A batch is also written early once its string data reaches this size. */
+    private static final int MAX_BATCH_DATA_BYTES = 64 * 1024 * 1024;
+
+    private final OutputStream out;
+    private final int batchSize;
+    private final ExportBuffer prefix = new ExportBuffer(8);
+    private Column[] columns;
+    private int rows;
+
+    ArrowStreamWriter(OutputStream out, int batchSize) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void writeHeader(ResultSetMetaData metaData) throws SQLException, IOException {
+        int columnCount = metaData.getColumnCount();
+        columns = new Column[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            columns[i - 1] = column(metaData, i);
+        }
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(256 + columnCount * 64);
+        int[] fields = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Column column = columns[i];
+            int name = builder.createString(column.name);
+            int type = column.type.applyAsInt(builder);
+            int children = Field.createChildrenVector(builder, new int[0]);
+            fields[i] = Field.createField(builder, name, true, column.typeType, type, 0, children, 0);
+        }
+        int schema = Schema.createSchema(builder, Endianness.Little, Schema.createFieldsVector(builder, fields), 0, 0);
+        writeMessage(builder, MessageHeader.Schema, schema, 0);
+    }
+
+    @Override
+    public void writeRow(ResultSet rs) throws SQLException, IOException {
+        int dataBytes = 0;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].append(rs, i + 1, rows);
+            dataBytes += columns[i].dataBytes();
+        }
+        rows++;
+        if (rows == batchSize || dataBytes >= MAX_BATCH_DATA_BYTES) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rows > 0) {
+            writeBatch();
+        }
+        // End-of-stream marker: continuation token and a zero metadata length
+        prefix.clear();
+        prefix.writeIntLE(-1);
+        prefix.writeIntLE(0);
+        prefix.writeTo(out);
+        out.flush();
+    }
+
+    private void writeBatch() throws IOException {
+        int bufferCount = 0;
+        for (Column column : columns) {
+            bufferCount += column.bufferCount();
+        }
+        long[] offsets = new long[bufferCount];
+        long[] lengths = new long[bufferCount];
+        long bodyLength = 0;
+        int k = 0;
+        for (Column column : columns) {
+            for (int b = 0; b < column.bufferCount(); b++, k++) {
+                offsets[k] = bodyLength;
+                lengths[k] = column.bufferLength(b, rows);
+                bodyLength += padded(lengths[k]);
+            }
+        }
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(256 + bufferCount * 16 + columns.length * 16);
+        // Vectors of structs are built back to front
+        RecordBatch.startBuffersVector(builder, bufferCount);
+        for (int i = bufferCount - 1; i >= 0; i--) {
+            Buffer.createBuffer(builder, offsets[i], lengths[i]);
+        }
+        int buffers = builder.endVector();
+        RecordBatch.startNodesVector(builder, columns.length);
+        for (int i = columns.length - 1; i >= 0; i--) {
+            FieldNode.createFieldNode(builder, rows, columns[i].nullCount);
+        }
+        int nodes = builder.endVector();
+        int batch = RecordBatch.createRecordBatch(builder, rows, nodes, buffers, 0, 0);
+        writeMessage(builder, MessageHeader.RecordBatch, batch, bodyLength);
+
+        k = 0;
+        for (Column column : columns) {
+            for (int b = 0; b < column.bufferCount(); b++, k++) {
+                column.writeBuffer(b, rows, out);
+                writeZeros(padded(lengths[k]) - lengths[k]);
+            }
+            column.reset();
+        }
+        rows = 0;
+    }
+
+    /**
+     * Writes an encapsulated message: continuation token, metadata length, the flatbuffer padded
+     * to 8 bytes. The body, if any, follows.
+     */
+    private void writeMessage(FlatBufferBuilder builder, byte headerType, int header, long bodyLength)
+            throws IOException {
+        int message = Message.createMessage(builder, MetadataVersion.V5, headerType, header, bodyLength, 0);
+        builder.finish(message);
+        byte[] metadata = builder.sizedByteArray();
+        int length = (int) padded(metadata.length);
+        prefix.clear();
+        prefix.writeIntLE(-1);
+        prefix.writeIntLE(length);
+        prefix.writeTo(out);
+        out.write(metadata);
+        writeZeros(length - metadata.length);
+    }
+
+    private void writeZeros(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            out.write(0);
+        }
+    }
+
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    private Column column(ResultSetMetaData metaData, int index) throws SQLException {
+        String name = JdbcUtils.lookupColumnName(metaData, index);
+        String typeName = metaData.getColumnTypeName(index);
+        switch (metaData.getColumnType(index)) {
+            case Types.TINYINT, Types.SMALLINT:
+                return new FixedWidthColumn(name, Type.Int, builder -> Int.createInt(builder, 16, true), 2,
+                    (rs, column, values) -> {
+                        short value = rs.getShort(column);
+                        values.writeShortLE(value);
+                        return !rs.wasNull();
+                    });
+            case Types.INTEGER:
+                return new FixedWidthColumn(name, Type.Int, builder -> Int.createInt(builder, 32, true), 4,
+                    (rs, column, values) -> {
+                        int value = rs.getInt(column);
+                        values.writeIntLE(value);
+                        return !rs.wasNull();
+                    });
+            case Types.BIGINT:
+                return new FixedWidthColumn(name, Type.Int, builder -> Int.createInt(builder, 64, true), 8,
+                    (rs, column, values) -> {
+                        long value = rs.getLong(column);
+                        values.writeLongLE(value);
+                        return !rs.wasNull();
+                    });
+            case Types.REAL:
+                return new FixedWidthColumn(name, Type.FloatingPoint,
+                    builder -> FloatingPoint.createFloatingPoint(builder, Precision.SINGLE), 4,
+                    (rs, column, values) -> {
+                        float value = rs.getFloat(column);
+                        values.writeIntLE(Float.floatToRawIntBits(value));
+                        return !rs.wasNull();
+                    });
+            case Types.FLOAT, Types.DOUBLE:
+                return new FixedWidthColumn(name, Type.FloatingPoint,
+                    builder -> FloatingPoint.createFloatingPoint(builder, Precision.DOUBLE), 8,
+                    (rs, column, values) -> {
+                        double value = rs.getDouble(column);
+                        values.writeLongLE(Double.doubleToRawLongBits(value));
+                        return !rs.wasNull();
+                    });
+            case Types.DATE:
+                return new FixedWidthColumn(name, Type.Date, builder -> Date.createDate(builder, DateUnit.DAY), 4,
+                    (rs, column, values) -> {
+                        LocalDate value = rs.getObject(column, LocalDate.class);
+                        boolean finite = value != null && !value.equals(LocalDate.MAX) && !value.equals(LocalDate.MIN);
+                        values.writeIntLE(finite ? (int) value.toEpochDay() : 0);
+                        return finite;
+                    });
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE:
+                if ("timestamptz".equals(typeName)) {
+                    return new FixedWidthColumn(name, Type.Timestamp,
+                        builder -> Timestamp.createTimestamp(builder, TimeUnit.MICROSECOND, builder.createString("UTC")), 8,
+                        (rs, column, values) -> {
+                            OffsetDateTime value = rs.getObject(column, OffsetDateTime.class);
+                            boolean finite = value != null && !value.equals(OffsetDateTime.MAX)
+                                && !value.equals(OffsetDateTime.MIN);
+                            values.writeLongLE(finite ? micros(value.toEpochSecond(), value.getNano()) : 0);
+                            return finite;
+                        });
+                }
+                return new FixedWidthColumn(name, Type.Timestamp,
+                    builder -> Timestamp.createTimestamp(builder, TimeUnit.MICROSECOND, 0), 8,
+                    (rs, column, values) -> {
+                        LocalDateTime value = rs.getObject(column, LocalDateTime.class);
+                        boolean finite = value != null && !value.equals(LocalDateTime.MAX)
+                            && !value.equals(LocalDateTime.MIN);
+                        values.writeLongLE(finite ? micros(value.toEpochSecond(ZoneOffset.UTC), value.getNano()) : 0);
+                        return finite;
+                    });
+            case Types.NUMERIC, Types.DECIMAL: {
+                int precision = metaData.getPrecision(index);
+                int scale = metaData.getScale(index);
+                if (precision > 0 && precision <= 38 && scale >= 0 && scale <= precision) {
+                    return new FixedWidthColumn(name, Type.Decimal,
+                        builder -> Decimal.createDecimal(builder, precision, scale, 128), 16,
+                        (rs, column, values) -> {
+                            BigDecimal value = rs.getBigDecimal(column);
+                            if (value == null) {
+                                values.writeZeros(16);
+                                return false;
+                            }
+                            values.writeSignExtendedLE(
+                                value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().toByteArray(), 16);
+                            return true;
+                        });
+                }
+                return new Utf8Column(name, batchSize);
+            }
+            default:
+                // PostgreSQL reports both bool and bit(n) as Types.BIT
+                if ("bool".equals(typeName)) {
+                    return new BoolColumn(name, batchSize);
+                }
+                return new Utf8Column(name, batchSize);
+        }
+    }
+
+    private static long micros(long epochSecond, int nano) {
+        return epochSecond * 1_000_000L + nano / 1_000;
+    }
+
+    /**
+     * One column of the batch being built. Buffer 0 is always the validity bitmap.
+     */
+    private abstract class Column {
+
+        final String name;
+        final byte typeType;
+        final ToIntFunction<FlatBufferBuilder> type;
+        final byte[] validity;
+        int nullCount;
+
+        Column(String name, byte typeType, ToIntFunction<FlatBufferBuilder> type) {
+            this.name = name;
+            this.typeType = typeType;
+            this.type = type;
+            this.validity = new byte[(batchSize + 7) / 8];
+        }
+
+        void append(ResultSet rs, int column, int row) throws SQLException {
+            if (read(rs, column, row)) {
+                validity[row >> 3] |= (byte) (1 << (row & 7));
+            } else {
+                nullCount++;
+            }
+        }
+
+        /**
+         * Reads the value into the column's buffers, leaving a placeholder for NULL.
+         *
+         * @return false if the value is NULL
+         */
+        abstract boolean read(ResultSet rs, int column, int row) throws SQLException;
+
+        int bufferCount() {
+            return 2;
+        }
+
+        long bufferLength(int buffer, int rowCount) {
+            return (rowCount + 7) / 8;
+        }
+
+        void writeBuffer(int buffer, int rowCount, OutputStream target) throws IOException {
+            target.write(validity, 0, (rowCount + 7) / 8);
+        }
+
+        int dataBytes() {
+            return 0;
+        }
+
+        void reset() {
+            Arrays.fill(validity, (byte) 0);
+            nullCount = 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        /**
+         * Appends exactly one value (zeros for NULL) and returns false if it was NULL.
+         */
+        boolean read(ResultSet rs, int column, ExportBuffer values) throws SQLException;
+    }
+
+    private final class FixedWidthColumn extends Column {
+
+        private final ExportBuffer values;
+        private final ValueReader reader;
+
+        FixedWidthColumn(String name, byte typeType, ToIntFunction<FlatBufferBuilder> type, int width,
+                ValueReader reader) {
+            super(name, typeType, type);
+            this.values = new ExportBuffer(batchSize * width);
+            this.reader = reader;
+        }
+
+        @Override
+        boolean read(ResultSet rs, int column, int row) throws SQLException {
+            return reader.read(rs, column, values);
+        }
+
+        @Override
+        long bufferLength(int buffer, int rowCount) {
+            return buffer == 0 ? super.bufferLength(buffer, rowCount) : values.size();
+        }
+
+        @Override
+        void writeBuffer(int buffer, int rowCount, OutputStream target) throws IOException {
+            if (buffer == 0) {
+                super.writeBuffer(buffer, rowCount, target);
+            } else {
+                values.writeTo(target);
+            }
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            values.clear();
+        }
+    }
+
+    private final class BoolColumn extends Column {
+
+        private final byte[] values;
+
+        BoolColumn(String name, int capacity) {
+            super(name, Type.Bool, builder -> {
+                Bool.startBool(builder);
+                return Bool.endBool(builder);
+            });
+            this.values = new byte[(capacity + 7) / 8];
+        }
+
+        @Override
+        boolean read(ResultSet rs, int column, int row) throws SQLException {
+            boolean value = rs.getBoolean(column);
+            if (value) {
+                values[row >> 3] |= (byte) (1 << (row & 7));
+            }
+            return !rs.wasNull();
+        }
+
+        @Override
+        void writeBuffer(int buffer, int rowCount, OutputStream target) throws IOException {
+            target.write(buffer == 0 ? validity : values, 0, (rowCount + 7) / 8);
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            Arrays.fill(values, (byte) 0);
+        }
+    }
+
+    private final class Utf8Column extends Column {
+
+        private final ExportBuffer offsets;
+        private final ExportBuffer data;
+
+        Utf8Column(String name, int capacity) {
+            super(name, Type.Utf8, builder -> {
+                Utf8.startUtf8(builder);
+                return Utf8.endUtf8(builder);
+            });
+            this.offsets = new ExportBuffer((capacity + 1) * 4);
+            this.data = new ExportBuffer(capacity * 16);
+            offsets.writeIntLE(0);
+        }
+
+        @Override
+        boolean read(ResultSet rs, int column, int row) throws SQLException {
+            String value = rs.getString(column);
+            if (value != null) {
+                data.writeUtf8(value);
+            }
+            offsets.writeIntLE(data.size());
+            return value != null;
+        }
+
+        @Override
+        int bufferCount() {
+            return 3;
+        }
+
+        @Override
+        long bufferLength(int buffer, int rowCount) {
+            return switch (buffer) {
+                case 0 -> super.bufferLength(buffer, rowCount);
+                case 1 -> offsets.size();
+                default -> data.size();
+            };
+        }
+
+        @Override
+        void writeBuffer(int buffer, int rowCount, OutputStream target) throws IOException {
+            switch (buffer) {
+                case 0 -> super.writeBuffer(buffer, rowCount, target);
+                case 1 -> offsets.writeTo(target);
+                default -> data.writeTo(target);
+            }
+        }
+
+        @Override
+        int dataBytes() {
+            return data.size();
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            offsets.clear();
+            data.clear();
+            offsets.writeIntLE(0);
+        }
+    }
+}
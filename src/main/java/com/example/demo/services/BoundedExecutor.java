@@ -0,0 +1,72 @@
+package com.example.demo.services;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous operations, such as {@link QueryExecutor#submit}, at most {@code limit} at a
+ * time, in submission order. Operations waiting for a slot are queued here and take no thread, so
+ * one request running many statements holds at most {@code limit} pooled connections.
+ *
+ * <p>A slot is kept until its operation completes. An operation that fails to start, e.g.
+ * because the query executor is full, fails its own future and frees its slot; no queued
+ * operation is lost.
+ */
+final class BoundedExecutor {
+
+    private final int limit;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    BoundedExecutor(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Calls {@code start} once a slot is free; the returned future completes with the operation.
+     */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> start) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        queue.add(() -> {
+            CompletableFuture<T> operation;
+            try {
+                operation = start.get();
+            } catch (RuntimeException e) {
+                operation = CompletableFuture.failedFuture(e);
+            }
+            operation.whenComplete((value, error) -> {
+                active.decrementAndGet();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+                drain();
+            });
+        });
+        drain();
+        return result;
+    }
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int current = active.get();
+            if (current >= limit) {
+                // A running operation drains again when it completes
+                return;
+            }
+            if (!active.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable next = queue.poll();
+            if (next == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            next.run();
+        }
+    }
+}
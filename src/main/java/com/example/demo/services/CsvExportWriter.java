@@ -0,0 +1,139 @@
+package com.example.demo.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Writes a result set as CSV with a header row, following the conventions of PostgreSQL's
+ * {@code COPY ... (FORMAT csv, HEADER)}: rows end with '\n', NULL is an empty field, an empty
+ * string is {@code ""}, and fields containing a delimiter, quote or line break are quoted.
+ *
+ * <p>Each column gets a cell writer chosen from its JDBC type. Integers are read with
+ * {@code getLong} and written as digits, floating point and boolean columns are read as primitives
+ * too, so numeric cells are never boxed. Everything else is PostgreSQL's text representation.
+ */
+final class CsvExportWriter implements ExportWriter {
+
+    /** Buffered bytes that trigger a write to the stream. */
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    @FunctionalInterface
+    private interface CellWriter {
+        void write(ResultSet rs, int column) throws SQLException;
+    }
+
+    private final OutputStream out;
+    private final ExportBuffer buffer = new ExportBuffer(FLUSH_BYTES + 8 * 1024);
+    private CellWriter[] cells;
+
+    CsvExportWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void writeHeader(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        cells = new CellWriter[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            cells[i - 1] = cellWriter(metaData.getColumnType(i), metaData.getColumnTypeName(i));
+            if (i > 1) {
+                buffer.writeByte(',');
+            }
+            writeText(JdbcUtils.lookupColumnName(metaData, i));
+        }
+        buffer.writeByte('\n');
+    }
+
+    @Override
+    public void writeRow(ResultSet rs) throws SQLException, IOException {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                buffer.writeByte(',');
+            }
+            cells[i].write(rs, i + 1);
+        }
+        buffer.writeByte('\n');
+        if (buffer.size() >= FLUSH_BYTES) {
+            buffer.writeTo(out);
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        buffer.writeTo(out);
+        buffer.clear();
+        out.flush();
+    }
+
+    private CellWriter cellWriter(int sqlType, String typeName) {
+        switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT:
+                return (rs, column) -> {
+                    long value = rs.getLong(column);
+                    if (!rs.wasNull()) {
+                        buffer.writeDecimal(value);
+                    }
+                };
+            case Types.REAL:
+                return (rs, column) -> {
+                    // float4 widened to double would print digits the column does not have
+                    float value = rs.getFloat(column);
+                    if (!rs.wasNull()) {
+                        buffer.writeAscii(Float.toString(value));
+                    }
+                };
+            case Types.FLOAT, Types.DOUBLE:
+                return (rs, column) -> {
+                    double value = rs.getDouble(column);
+                    if (!rs.wasNull()) {
+                        buffer.writeAscii(Double.toString(value));
+                    }
+                };
+            default:
+                // PostgreSQL reports both bool and bit(n) as Types.BIT
+                if ("bool".equals(typeName)) {
+                    return (rs, column) -> {
+                        boolean value = rs.getBoolean(column);
+                        if (!rs.wasNull()) {
+                            buffer.writeAscii(value ? "true" : "false");
+                        }
+                    };
+                }
+                return (rs, column) -> {
+                    String value = rs.getString(column);
+                    if (value != null) {
+                        writeText(value);
+                    }
+                };
+        }
+    }
+
+    private void writeText(String value) {
+        if (!needsQuotes(value)) {
+            buffer.writeUtf8(value);
+            return;
+        }
+        buffer.writeByte('"');
+        buffer.writeUtf8(value.indexOf('"') < 0 ? value : value.replace("\"", "\"\""));
+        buffer.writeByte('"');
+    }
+
+    static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
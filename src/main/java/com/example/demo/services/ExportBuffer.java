@@ -0,0 +1,173 @@
+package com.example.demo.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for the export writers. Numbers and strings are encoded straight into the
+ * array (ASCII digits, UTF-8, little-endian binary), so writing a cell allocates nothing.
+ */
+final class ExportBuffer {
+
+    private byte[] bytes;
+    private int size;
+
+    ExportBuffer(int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Appends zero bytes until the size is a multiple of 8, as Arrow requires for every buffer.
+     */
+    void padTo8() {
+        int padding = (8 - (size & 7)) & 7;
+        ensureCapacity(padding);
+        Arrays.fill(bytes, size, size + padding, (byte) 0);
+        size += padding;
+    }
+
+    /**
+     * Writes {@code value} in decimal.
+     */
+    void writeDecimal(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            bytes[size++] = '-';
+            value = -value;
+        }
+        int end = size + digits(value);
+        for (int i = end - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size = end;
+    }
+
+    void writeAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Writes {@code value} as UTF-8; unpaired surrogates become '?', as in {@link String#getBytes}.
+     */
+    void writeUtf8(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        int i = 0;
+        // ASCII fast path: one byte per char, capacity already reserved
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            bytes[size++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                bytes[size++] = (byte) (0xC0 | c >> 6);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                writeByte('?');
+            } else {
+                ensureCapacity(3);
+                bytes[size++] = (byte) (0xE0 | c >> 12);
+                bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    void writeShortLE(short value) {
+        ensureCapacity(2);
+        bytes[size++] = (byte) value;
+        bytes[size++] = (byte) (value >> 8);
+    }
+
+    void writeIntLE(int value) {
+        ensureCapacity(4);
+        for (int shift = 0; shift < 32; shift += 8) {
+            bytes[size++] = (byte) (value >> shift);
+        }
+    }
+
+    void writeLongLE(long value) {
+        ensureCapacity(8);
+        for (int shift = 0; shift < 64; shift += 8) {
+            bytes[size++] = (byte) (value >> shift);
+        }
+    }
+
+    /**
+     * Writes a big-endian two's complement integer (as from {@link java.math.BigInteger#toByteArray})
+     * as a little-endian value of {@code width} bytes, sign-extended.
+     */
+    void writeSignExtendedLE(byte[] bigEndian, int width) {
+        ensureCapacity(width);
+        byte sign = bigEndian.length > 0 && bigEndian[0] < 0 ? (byte) -1 : 0;
+        for (int i = 0; i < width; i++) {
+            int source = bigEndian.length - 1 - i;
+            bytes[size++] = source >= 0 ? bigEndian[source] : sign;
+        }
+    }
+
+    /**
+     * Writes zero bytes; used for the value slot of a NULL.
+     */
+    void writeZeros(int count) {
+        ensureCapacity(count);
+        Arrays.fill(bytes, size, size + count, (byte) 0);
+        size += count;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
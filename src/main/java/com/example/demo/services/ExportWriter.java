@@ -0,0 +1,29 @@
+package com.example.demo.services;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Encodes a result set for /query/export, one row at a time as it comes off the cursor.
+ * Implementations buffer internally and write to their stream in large blocks.
+ */
+interface ExportWriter {
+
+    /**
+     * Called once, before the first row, with the columns of the result.
+     */
+    void writeHeader(ResultSetMetaData metaData) throws SQLException, IOException;
+
+    /**
+     * Writes the row {@code rs} is positioned on.
+     */
+    void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    /**
+     * Writes what is still buffered and flushes the stream. Not called when the export fails, so
+     * a broken export never ends like a complete one.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,267 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.MultiQueryRequest;
+import com.example.demo.dto.MultiQueryResponse;
+import com.example.demo.dto.QueryResponse;
+import com.example.demo.dto.ResultFormat;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs several statements for /query/execute/multi and returns all result sets in one response.
+ *
+ * <p>In {@code pipeline} mode the statements run one after the other on a single connection,
+ * taken from the pool once: in auto-commit mode, or in one transaction when requested. A pipeline
+ * that only reads runs on a replica when replicas are configured; otherwise all of it runs on the
+ * primary, so reads see the writes before them.
+ *
+ * <p>In {@code parallel} mode the statements are independent. Each runs on its own pooled
+ * connection, with at most {@code query.multi.max-parallel} running at once.
+ *
+ * <p>All statements run under one queryId: each carries the statement timeout, and cancelling
+ * the query cancels whatever is still running. Statements run outside a transaction are served
+ * from and invalidate the result cache like /query/execute.
+ */
+@Service
+public class MultiQueryService {
+
+    public static final String PIPELINE = "pipeline";
+    public static final String PARALLEL = "parallel";
+
+    @Autowired
+    private QueryServices queryServices;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private ReadReplicaRouting readReplicaRouting;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private QueryExecutor queryExecutor;
+
+    @Value("${query.multi.max-statements:50}")
+    private int maxStatements;
+
+    /** Statements of one parallel request running at the same time. */
+    @Value("${query.multi.max-parallel:4}")
+    private int maxParallel;
+
+    public CompletableFuture<MultiQueryResponse> executeAsync(MultiQueryRequest request) {
+        long startTime = System.currentTimeMillis();
+        List<String> statements = request == null ? null : request.getStatements();
+        if (statements == null || statements.isEmpty()) {
+            return CompletableFuture.completedFuture(rejected("At least one statement is required.", startTime));
+        }
+        if (statements.size() > maxStatements) {
+            return CompletableFuture.completedFuture(
+                rejected("At most " + maxStatements + " statements can be sent at once.", startTime));
+        }
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i) == null || statements.get(i).isBlank()) {
+                return CompletableFuture.completedFuture(rejected("Statement " + (i + 1) + " is empty.", startTime));
+            }
+        }
+        String mode = request.getMode() == null || request.getMode().isBlank()
+            ? PIPELINE : request.getMode().trim().toLowerCase(Locale.ROOT);
+        if (!PIPELINE.equals(mode) && !PARALLEL.equals(mode)) {
+            return CompletableFuture.completedFuture(
+                rejected("Unknown mode '" + request.getMode() + "'; use pipeline or parallel.", startTime));
+        }
+        boolean transaction = Boolean.TRUE.equals(request.getTransaction());
+        if (transaction && PARALLEL.equals(mode)) {
+            return CompletableFuture.completedFuture(
+                rejected("transaction is only supported in pipeline mode.", startTime));
+        }
+
+        ResultFormat format;
+        QueryRegistry.RunningQuery query;
+        try {
+            format = ResultFormat.from(request.getResultFormat());
+            query = queryRegistry.register(request.getQueryId(), "MULTI", request.getTimeoutSeconds());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(rejected(e.getMessage(), startTime));
+        }
+
+        Timer.Sample sample = queryMetrics.start();
+        CompletableFuture<List<QueryResponse>> results = PARALLEL.equals(mode)
+            ? runParallel(statements, format, query)
+            : queryExecutor.submit(query, () -> runPipeline(statements, transaction, format, query));
+
+        return results.handle((list, error) -> {
+            MultiQueryResponse response = new MultiQueryResponse();
+            response.setQueryId(query.getId());
+            response.setMode(mode);
+            response.setTransaction(transaction);
+            if (QueryExecutor.isRejected(error)) {
+                response.setRc("503");
+                response.setMessage(queryExecutor.rejectionMessage());
+                response.setResults(List.of());
+            } else if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                response.setRc("500");
+                response.setMessage("Error executing statements: " + cause.getMessage());
+                response.setResults(List.of());
+            } else {
+                int succeeded = (int) list.stream().filter(result -> "200".equals(result.getRc())).count();
+                boolean rolledBack = transaction && succeeded < list.size();
+                response.setRc(rolledBack ? "500" : "200");
+                response.setMessage(rolledBack
+                    ? "A statement failed; the transaction was rolled back."
+                    : succeeded + " of " + list.size() + " statements executed successfully.");
+                response.setResults(list);
+                response.setSucceeded(succeeded);
+                response.setFailed(list.size() - succeeded);
+            }
+            response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return response;
+        }).whenComplete((response, error) -> {
+            queryRegistry.finish(query);
+            long rows = response.getResults().stream()
+                .filter(result -> result.getColumns() != null && !result.getColumns().isEmpty())
+                .mapToLong(result -> result.getRowsAffected() == null ? 0 : result.getRowsAffected())
+                .sum();
+            queryMetrics.query(sample, "MULTI", response.getRc(), rows);
+        });
+    }
+
+    /**
+     * Runs the statements in order on one connection. Without a transaction the template only
+     * binds the connection for the whole pipeline, and every statement commits on its own.
+     */
+    private List<QueryResponse> runPipeline(List<String> statements, boolean transaction, ResultFormat format,
+            QueryRegistry.RunningQuery query) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(transaction
+            ? TransactionDefinition.PROPAGATION_REQUIRED : TransactionDefinition.PROPAGATION_SUPPORTS);
+
+        Supplier<List<QueryResponse>> pipeline = () -> transactionTemplate.execute(status -> {
+            List<QueryResponse> results = new ArrayList<>();
+            boolean failed = false;
+            for (String sql : statements) {
+                if (failed) {
+                    QueryResponse skipped = new QueryResponse();
+                    skipped.setRc("500");
+                    skipped.setMessage("Not executed: an earlier statement failed and the transaction was rolled back.");
+                    skipped.setExecutedQuery(sql);
+                    skipped.setQueryType("MULTI");
+                    results.add(skipped);
+                    continue;
+                }
+                // Results read inside a transaction may never commit, so they bypass the result cache
+                QueryResponse result = runStatement(sql, format, query, !transaction);
+                results.add(result);
+                if (transaction && !"200".equals(result.getRc())) {
+                    status.setRollbackOnly();
+                    failed = true;
+                }
+            }
+            return results;
+        });
+
+        List<QueryResponse> results;
+        try {
+            results = statements.stream().allMatch(ReadReplicaRouting::isReadOnly)
+                ? readReplicaRouting.onReplica(pipeline)
+                : readReplicaRouting.onPrimary(pipeline);
+        } finally {
+            if (transaction) {
+                statements.forEach(queryResultCache::afterStatement);
+            }
+        }
+        if (transaction && results.stream().anyMatch(result -> !"200".equals(result.getRc()))) {
+            results.stream()
+                .filter(result -> "200".equals(result.getRc()))
+                .forEach(result -> result.setMessage("Executed, then rolled back with the transaction."));
+        }
+        return results;
+    }
+
+    /**
+     * Runs the statements on separate connections, at most {@code max-parallel} at a time.
+     */
+    private CompletableFuture<List<QueryResponse>> runParallel(List<String> statements, ResultFormat format,
+            QueryRegistry.RunningQuery query) {
+        BoundedExecutor lanes = new BoundedExecutor(Math.max(1, maxParallel));
+        List<CompletableFuture<QueryResponse>> results = new ArrayList<>();
+        for (String sql : statements) {
+            results.add(lanes.submit(() -> queryExecutor.submit(query, () -> runStatement(sql, format, query, true)))
+                .exceptionally(error -> notRun(sql, error)));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+            .thenApply(done -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    private QueryResponse runStatement(String sql, ResultFormat format, QueryRegistry.RunningQuery query,
+            boolean useResultCache) {
+        long startTime = System.currentTimeMillis();
+        QueryResponse response;
+        try {
+            response = useResultCache
+                ? queryServices.runQuery(sql, format, query)
+                : queryServices.execute(sql, null, format, query);
+            response.setRc("200");
+            response.setMessage("Query executed successfully.");
+        } catch (Exception e) {
+            response = new QueryResponse();
+            if (query.wasStoppedBy(e)) {
+                response.setRc(query.stoppedRc());
+                response.setMessage(query.stoppedMessage());
+            } else {
+                response.setRc("500");
+                response.setMessage("Error executing query: " + e.getMessage());
+            }
+        }
+        response.setExecutedQuery(sql);
+        response.setQueryType("MULTI");
+        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * Result of a parallel statement that never ran, e.g. because the query executor was full.
+     */
+    private QueryResponse notRun(String sql, Throwable error) {
+        QueryResponse response = new QueryResponse();
+        if (QueryExecutor.isRejected(error)) {
+            response.setRc("503");
+            response.setMessage(queryExecutor.rejectionMessage());
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            response.setRc("500");
+            response.setMessage("Error executing query: " + cause.getMessage());
+        }
+        response.setExecutedQuery(sql);
+        response.setQueryType("MULTI");
+        return response;
+    }
+
+    private static MultiQueryResponse rejected(String message, long startTime) {
+        MultiQueryResponse response = new MultiQueryResponse();
+        response.setRc("400");
+        response.setMessage(message);
+        response.setResults(List.of());
+        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return response;
+    }
+}
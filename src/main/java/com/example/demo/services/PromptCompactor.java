@@ -0,0 +1,300 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.PromptSummary;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the schema part of the AI prompt small. Columns are ranked by how well their names match
+ * the words of the question, and described in one compact line per table,
+ * {@code orders(id bigint PK, customer_id bigint, total numeric, +12 more)}. Columns are then
+ * added in rank order until the prompt reaches {@code query.ai.prompt.max-tokens}. Primary keys
+ * are always kept, as are the requested tables.
+ *
+ * <p>When a request names no tables, the {@code max-auto-tables} tables whose names and columns
+ * match the question best are chosen.
+ *
+ * <p>Token counts are estimated at four characters per token, which is close for English text
+ * and SQL identifiers; there is no tokenizer for the model on this side.
+ */
+@Component
+public class PromptCompactor {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /** Characters kept free per table for the "+N more" marker. */
+    private static final int OMITTED_MARKER_CHARS = 12;
+
+    private static final String LEGEND =
+        "Format: table(column type, ...). PK marks the primary key; +N more counts columns left out.\n";
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^a-z0-9]+");
+
+    private static final Pattern CAMEL_CASE = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "the", "of", "for", "to", "in", "on", "at", "by", "with", "and", "or", "all", "any", "me",
+        "show", "list", "get", "give", "find", "what", "which", "who", "how", "many", "much", "is", "are",
+        "was", "were", "be", "from", "that", "this", "these", "those", "each", "every", "per", "their", "its",
+        "my", "our", "than", "more", "less", "top", "row", "table", "data", "please", "return", "have", "has");
+
+    private static final Set<String> TIME_WORDS = Set.of(
+        "when", "date", "time", "day", "week", "month", "year", "today", "yesterday", "recent", "latest",
+        "last", "newest", "oldest", "since", "before", "after", "created", "updated");
+
+    private static final Map<String, String> SHORT_TYPES = Map.of(
+        "character varying", "varchar",
+        "character", "char",
+        "integer", "int",
+        "double precision", "float8",
+        "timestamp without time zone", "timestamp",
+        "timestamp with time zone", "timestamptz",
+        "time without time zone", "time",
+        "boolean", "bool");
+
+    /** Upper bound for the whole prompt; 0 or less disables pruning. */
+    @Value("${query.ai.prompt.max-tokens:3000}")
+    private int maxTokens;
+
+    @Value("${query.ai.prompt.max-auto-tables:5}")
+    private int maxAutoTables;
+
+    /**
+     * A column and its relevance to the question.
+     */
+    private record Column(String name, String type, int position, boolean primaryKey, int score, int table) {
+
+        String render() {
+            return primaryKey ? name + ' ' + type + " PK" : name + ' ' + type;
+        }
+    }
+
+    public static int estimateTokens(int characters) {
+        return (characters + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * The tables of {@code allSchemas} most relevant to {@code question}, best first. If no table
+     * matches at all, the first {@code max-auto-tables} by name are returned.
+     */
+    public Map<String, Map<String, Map<String, Object>>> selectTables(String question,
+            Map<String, Map<String, Map<String, Object>>> allSchemas) {
+        Set<String> words = words(question);
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Map<String, Object>>> table : allSchemas.entrySet()) {
+            String bareName = table.getKey().substring(table.getKey().lastIndexOf('.') + 1);
+            int score = 2 * matchScore(nameParts(bareName), words);
+            for (String column : table.getValue().getOrDefault("columns", Map.of()).keySet()) {
+                score += matchScore(nameParts(column), words) > 0 ? 3 : 0;
+            }
+            scores.put(table.getKey(), score);
+        }
+        boolean anyMatch = scores.values().stream().anyMatch(score -> score > 0);
+
+        Map<String, Map<String, Map<String, Object>>> selected = new LinkedHashMap<>();
+        scores.entrySet().stream()
+            .filter(entry -> !anyMatch || entry.getValue() > 0)
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(Math.max(1, maxAutoTables))
+            .forEach(entry -> selected.put(entry.getKey(), allSchemas.get(entry.getKey())));
+        return selected;
+    }
+
+    /**
+     * Describes {@code tableSchemas} for the prompt within the token budget, given that the rest
+     * of the prompt takes {@code fixedChars}. Tables and column counts go into {@code summary}.
+     *
+     * @param droppable whether tables may be left out (auto-selected) when even their primary keys
+     *     do not fit; requested tables are always described
+     */
+    public String describe(String question, Map<String, Map<String, Map<String, Object>>> tableSchemas,
+            int fixedChars, boolean droppable, PromptSummary summary) {
+        Set<String> words = words(question);
+        boolean timeQuestion = words.stream().anyMatch(TIME_WORDS::contains);
+
+        List<String> tables = new ArrayList<>(tableSchemas.keySet());
+        List<List<Column>> columns = new ArrayList<>();
+        for (int t = 0; t < tables.size(); t++) {
+            columns.add(rank(tableSchemas.get(tables.get(t)), words, timeQuestion, t));
+        }
+
+        int budget = maxTokens > 0 ? maxTokens * CHARS_PER_TOKEN - fixedChars - LEGEND.length() : Integer.MAX_VALUE;
+        int used = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            used += tables.get(t).length() + 3 + OMITTED_MARKER_CHARS;
+            for (Column column : columns.get(t)) {
+                if (column.primaryKey()) {
+                    used += column.render().length() + 2;
+                }
+            }
+        }
+        while (droppable && used > budget && tables.size() > 1) {
+            int last = tables.size() - 1;
+            used -= tables.get(last).length() + 3 + OMITTED_MARKER_CHARS;
+            for (Column column : columns.get(last)) {
+                if (column.primaryKey()) {
+                    used -= column.render().length() + 2;
+                }
+            }
+            tables.remove(last);
+            columns.remove(last);
+        }
+
+        List<Set<Column>> included = new ArrayList<>();
+        List<Column> candidates = new ArrayList<>();
+        for (List<Column> tableColumns : columns) {
+            Set<Column> kept = new HashSet<>();
+            for (Column column : tableColumns) {
+                if (column.primaryKey()) {
+                    kept.add(column);
+                } else {
+                    candidates.add(column);
+                }
+            }
+            included.add(kept);
+        }
+        // Equal scores go by column position across tables, so no table is starved.
+        candidates.sort(Comparator.comparingInt(Column::score).reversed()
+            .thenComparingInt(Column::position)
+            .thenComparingInt(Column::table));
+        for (Column column : candidates) {
+            int cost = column.render().length() + 2;
+            if (used + cost <= budget) {
+                included.get(column.table()).add(column);
+                used += cost;
+            }
+        }
+
+        StringBuilder description = new StringBuilder(LEGEND);
+        int includedCount = 0;
+        int omittedCount = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            Set<Column> kept = included.get(t);
+            List<String> rendered = columns.get(t).stream()
+                .filter(kept::contains)
+                .map(Column::render)
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+            int omitted = columns.get(t).size() - kept.size();
+            if (omitted > 0) {
+                rendered.add("+" + omitted + " more");
+            }
+            description.append(tables.get(t)).append('(').append(String.join(", ", rendered)).append(")\n");
+            includedCount += kept.size();
+            omittedCount += omitted;
+        }
+
+        summary.setTables(List.copyOf(tables));
+        summary.setColumnsIncluded(includedCount);
+        summary.setColumnsOmitted(omittedCount);
+        summary.setTokenBudget(maxTokens > 0 ? maxTokens : null);
+        return description.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Column> rank(Map<String, Map<String, Object>> tableSchema, Set<String> words, boolean timeQuestion,
+            int table) {
+        Set<String> indexed = new HashSet<>();
+        for (Object index : tableSchema.getOrDefault("indexes", Map.of()).values()) {
+            Object indexColumns = ((Map<String, Object>) index).get("columns");
+            if (indexColumns instanceof List<?> list) {
+                list.forEach(name -> indexed.add(String.valueOf(name)));
+            }
+        }
+
+        List<Column> ranked = new ArrayList<>();
+        int position = 0;
+        for (Object value : tableSchema.getOrDefault("columns", Map.of()).values()) {
+            Map<String, Object> column = (Map<String, Object>) value;
+            String name = String.valueOf(column.get("column_name"));
+            String type = shortType(String.valueOf(column.get("data_type")));
+            Object ordinal = column.get("ordinal_position");
+            position = ordinal instanceof Number number ? number.intValue() : position + 1;
+
+            int score = matchScore(nameParts(name), words);
+            if (timeQuestion && (type.startsWith("timestamp") || type.equals("date"))) {
+                score += 5;
+            }
+            if (indexed.contains(name)) {
+                score += 2;
+            }
+            if (name.equalsIgnoreCase("id") || name.toLowerCase(Locale.ROOT).endsWith("_id")) {
+                score += 3;
+            }
+            ranked.add(new Column(name, type, position, Boolean.TRUE.equals(column.get("is_primary_key")), score, table));
+        }
+        ranked.sort(Comparator.comparingInt(Column::position));
+        return ranked;
+    }
+
+    /**
+     * 10 per name part that is a word of the question, 4 per part that shares a prefix of at least
+     * four letters with one ("cust" and "customers").
+     */
+    private static int matchScore(List<String> parts, Set<String> words) {
+        int score = 0;
+        for (String part : parts) {
+            if (words.contains(part)) {
+                score += 10;
+            } else if (part.length() >= 4) {
+                for (String word : words) {
+                    if (word.length() >= 4 && (word.startsWith(part) || part.startsWith(word))) {
+                        score += 4;
+                        break;
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    /** Stemmed, lower-case words of the question without stop words. */
+    private static Set<String> words(String question) {
+        Set<String> words = new HashSet<>();
+        if (question == null) {
+            return words;
+        }
+        for (String word : WORD_SEPARATOR.split(question.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                words.add(stem(word));
+            }
+        }
+        return words;
+    }
+
+    /** Stemmed parts of a snake_case or camelCase identifier. */
+    private static List<String> nameParts(String name) {
+        List<String> parts = new ArrayList<>();
+        for (String camelPart : CAMEL_CASE.split(name)) {
+            for (String part : WORD_SEPARATOR.split(camelPart.toLowerCase(Locale.ROOT))) {
+                if (!part.isEmpty()) {
+                    parts.add(stem(part));
+                }
+            }
+        }
+        return parts;
+    }
+
+    private static String stem(String word) {
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + 'y';
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static String shortType(String dataType) {
+        String type = dataType.toLowerCase(Locale.ROOT);
+        return SHORT_TYPES.getOrDefault(type, type);
+    }
+}
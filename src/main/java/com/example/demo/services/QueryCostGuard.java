@@ -0,0 +1,161 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryPlanSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks AI-generated SQL with {@code EXPLAIN (FORMAT JSON)} before it runs. The "add a LIMIT"
+ * requirement in the prompt is only a suggestion to the model, so this is what keeps a generated
+ * cross join from scanning billions of rows.
+ *
+ * <p>Statements estimated to return more than {@code max-rows} rows are wrapped in a LIMIT, or
+ * rejected when {@code on-exceed=reject} or the statement is not a SELECT. Statements whose
+ * estimated cost is above {@code max-cost}, even after the LIMIT, are rejected. A statement the
+ * planner cannot plan is rejected as well: that covers syntax errors, multiple statements and
+ * utility commands.
+ *
+ * <p>EXPLAIN runs in a read-only transaction that is always rolled back. With several statements
+ * in one string, the driver sends every one of them, so a write smuggled in after a SELECT fails
+ * here instead of running.
+ */
+@Component
+public class QueryCostGuard {
+
+    private static final Pattern READ_STATEMENT = Pattern.compile("^\\(*\\s*(select|with)\\b", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReadReplicaRouting readReplicaRouting;
+
+    @Value("${query.ai.cost-guard.enabled:true}")
+    private boolean enabled;
+
+    /** Highest accepted planner total cost. */
+    @Value("${query.ai.cost-guard.max-cost:1000000}")
+    private double maxCost;
+
+    /** Highest accepted planner row estimate; larger SELECTs get LIMIT max-rows. */
+    @Value("${query.ai.cost-guard.max-rows:10000}")
+    private long maxRows;
+
+    /** "limit" (default) to add a LIMIT when max-rows is exceeded, "reject" to refuse the statement. */
+    @Value("${query.ai.cost-guard.on-exceed:limit}")
+    private String onExceed;
+
+    /**
+     * Outcome of a check: the SQL to run (possibly with an added LIMIT), the plan it was judged on,
+     * and the reason when it was rejected.
+     */
+    public record Verdict(String sql, QueryPlanSummary plan, String rejection) {
+
+        public boolean isRejected() {
+            return rejection != null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Plans {@code sql} on a statement registered with {@code query}, so the check is bounded by
+     * the query's timeout and can be cancelled with it.
+     */
+    public Verdict check(String sql, QueryRegistry.RunningQuery query) {
+        QueryPlanSummary plan;
+        try {
+            plan = explain(sql, query);
+        } catch (DataAccessException e) {
+            if (query.wasStoppedBy(e)) {
+                throw e;
+            }
+            return rejected(sql, null, "Generated SQL could not be planned: " + e.getMostSpecificCause().getMessage());
+        }
+
+        boolean select = READ_STATEMENT.matcher(sql.trim()).find();
+        if (plan.getPlanRows() > maxRows) {
+            if (!select || "reject".equalsIgnoreCase(onExceed)) {
+                return rejected(sql, plan, String.format(
+                    "Generated SQL rejected: an estimated %d rows exceeds the limit of %d.", plan.getPlanRows(), maxRows));
+            }
+            String limited = "SELECT * FROM (" + sql + ") AS cost_guarded LIMIT " + maxRows;
+            try {
+                plan = explain(limited, query);
+            } catch (DataAccessException e) {
+                if (query.wasStoppedBy(e)) {
+                    throw e;
+                }
+                return rejected(sql, plan, "Generated SQL rejected: it returns more than " + maxRows
+                    + " rows and a LIMIT could not be added: " + e.getMostSpecificCause().getMessage());
+            }
+            plan.setAction("limited");
+            plan.setAppliedLimit(maxRows);
+            sql = limited;
+        }
+
+        if (plan.getTotalCost() > maxCost) {
+            return rejected(sql, plan, String.format(
+                "Generated SQL rejected: estimated cost %.0f exceeds the limit of %.0f.", plan.getTotalCost(), maxCost));
+        }
+        return new Verdict(sql, plan, null);
+    }
+
+    private Verdict rejected(String sql, QueryPlanSummary plan, String reason) {
+        if (plan != null) {
+            plan.setAction("rejected");
+        }
+        return new Verdict(sql, plan, reason);
+    }
+
+    /**
+     * Plans {@code sql} with {@code EXPLAIN (FORMAT JSON)} and summarizes its top node.
+     */
+    QueryPlanSummary explain(String sql, QueryRegistry.RunningQuery query) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        Supplier<String> explain = () -> transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return jdbcTemplate.execute((Statement stmt) -> {
+                query.attach(stmt, sql);
+                try (ResultSet rs = stmt.executeQuery("EXPLAIN (FORMAT JSON) " + sql)) {
+                    rs.next();
+                    return rs.getString(1);
+                }
+            });
+        });
+        // Plan where the statement will run
+        String planJson = ReadReplicaRouting.isReadOnly(sql) ? readReplicaRouting.onReplica(explain) : explain.get();
+        try {
+            JsonNode top = objectMapper.readTree(planJson).path(0).path("Plan");
+            return new QueryPlanSummary(
+                top.path("Node Type").asText(),
+                top.path("Startup Cost").asDouble(),
+                top.path("Total Cost").asDouble(),
+                top.path("Plan Rows").asLong(),
+                "accepted",
+                null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable EXPLAIN output: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Thread pool for the JDBC work of the query endpoints, kept apart from the pools Spring uses
+ * for its own async work, so streams and exports never take threads from single queries.
+ *
+ * <p>The pool is sized to the connection pool: more threads would only wait for a connection.
+ * Queries beyond that wait in a queue of {@code query.executor.queue-capacity}; when it is full,
+ * {@link #submit} fails with a {@link RejectedExecutionException}, which the endpoints answer with
+ * rc "503". Time spent in the queue counts against the query's timeout.
+ */
+@Component
+public class QueryExecutor {
+
+    @Value("${query.executor.pool-size:${spring.datasource.hikari.maximum-pool-size:20}}")
+    private int poolSize;
+
+    @Value("${query.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @PostConstruct
+    void init() {
+        executor.setCorePoolSize(Math.max(1, poolSize));
+        executor.setMaxPoolSize(Math.max(1, poolSize));
+        executor.setQueueCapacity(Math.max(0, queueCapacity));
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("query-");
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "query", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Runs {@code task} for {@code query} on the pool. The returned future fails with a
+     * {@link RejectedExecutionException} when the queue is full; it never throws.
+     */
+    public <T> CompletableFuture<T> submit(QueryRegistry.RunningQuery query, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        query.queued();
+        try {
+            executor.execute(() -> {
+                query.started(queuedAt);
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            query.started(queuedAt);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Whether {@code error} means a task was turned away because the queue was full.
+     */
+    public static boolean isRejected(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RejectedExecutionException;
+    }
+
+    public String rejectionMessage() {
+        return "Too many queries are waiting to run (" + queueCapacity + " queued); try again later.";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
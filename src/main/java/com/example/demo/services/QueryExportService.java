@@ -0,0 +1,219 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryResponse;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Exports query results as files for /query/export: CSV, gzip-compressed CSV or an Arrow IPC
+ * stream. Rows come through the same server-side cursor as the streaming endpoints and are
+ * encoded by type-aware column writers straight into output buffers, without building maps or
+ * JSON, so memory stays flat for extracts of any size.
+ */
+@Service
+public class QueryExportService {
+
+    @Autowired
+    private QueryStreamingService queryStreamingService;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    /**
+     * Rows fetched per cursor round-trip.
+     */
+    @Value("${query.export.fetch-size:10000}")
+    private int fetchSize;
+
+    /**
+     * Rows per Arrow record batch.
+     */
+    @Value("${query.export.arrow.batch-size:10000}")
+    private int arrowBatchSize;
+
+    /**
+     * Deflate level of csv.gz exports; 1 favours throughput over size.
+     */
+    @Value("${query.export.gzip-level:1}")
+    private int gzipLevel;
+
+    /**
+     * File formats supported by /query/export.
+     */
+    public enum ExportFormat {
+        /** CSV with a header row, like COPY ... (FORMAT csv, HEADER). */
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv"),
+        /** The CSV above, gzip-compressed. */
+        CSV_GZ(MediaType.parseMediaType("application/gzip"), "csv.gz"),
+        /** Arrow IPC streaming format, one record batch per arrow.batch-size rows. */
+        ARROW(MediaType.parseMediaType("application/vnd.apache.arrow.stream"), "arrows");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        ExportFormat(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static ExportFormat from(String value) {
+            if (value == null || value.isBlank()) {
+                return CSV;
+            }
+            try {
+                return ExportFormat.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    /**
+     * Executes the query and writes the file to {@code out} while rows are read from the cursor.
+     *
+     * <p>Writers buffer their output, so a query that fails before its first block has been
+     * written leaves {@code out} untouched and the caller can still answer with the returned
+     * error. After that the file is left unfinished (no final CSV block, gzip trailer or Arrow
+     * end-of-stream marker) and the returned rc tells the caller to abort the response.
+     *
+     * <p>{@code query} must have been registered with the {@link QueryRegistry}; it is finished
+     * here. If the client disconnects, the statement is cancelled and the IOException rethrown.
+     */
+    public QueryResponse export(String sql, String queryType, ExportFormat format, OutputStream out,
+            QueryRegistry.RunningQuery query) throws IOException {
+        try {
+            return exportRows(sql, queryType, format, out, query);
+        } finally {
+            queryRegistry.finish(query);
+        }
+    }
+
+    private QueryResponse exportRows(String sql, String queryType, ExportFormat format, OutputStream out,
+            QueryRegistry.RunningQuery query) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        Timer.Sample sample = queryMetrics.start();
+
+        GZIPOutputStream gzip = format == ExportFormat.CSV_GZ ? new LevelGzipOutputStream(out, gzipLevel) : null;
+        OutputStream target = gzip != null ? gzip : out;
+        ExportWriter writer = format == ExportFormat.ARROW
+            ? new ArrowStreamWriter(target, arrowBatchSize)
+            : new CsvExportWriter(target);
+        RowExporter exporter = new RowExporter(writer, query);
+
+        QueryResponse response = new QueryResponse();
+        response.setExecutedQuery(sql);
+        response.setQueryType(queryType);
+        response.setQueryId(query.getId());
+        response.setRc("200");
+        response.setMessage("Query exported successfully.");
+        try {
+            queryStreamingService.executeWithCursor(sql, fetchSize, exporter, query);
+            if (gzip != null) {
+                gzip.finish();
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away while the gzip trailer was written
+            record(sample, sql, query, startNanos, exporter.rowCount, "499");
+            throw e;
+        } catch (UncheckedIOException e) {
+            record(sample, sql, query, startNanos, exporter.rowCount, "499");
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            if (exporter.clientError != null) {
+                // The rollback after a client abort can fail as well and hide the original error.
+                record(sample, sql, query, startNanos, exporter.rowCount, "499");
+                throw exporter.clientError;
+            }
+            response.setRc("500");
+            response.setMessage("Error executing query: " + e.getMessage());
+            if (e instanceof DataAccessException dataAccessException) {
+                response.setMessage("Error executing query: " + dataAccessException.getMostSpecificCause().getMessage());
+                if (query.wasStoppedBy(e)) {
+                    response.setRc(query.stoppedRc());
+                    response.setMessage(query.stoppedMessage());
+                }
+            }
+        }
+
+        record(sample, sql, query, startNanos, exporter.rowCount, response.getRc());
+        response.setRowsAffected((int) Math.min(exporter.rowCount, Integer.MAX_VALUE));
+        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    private void record(Timer.Sample sample, String sql, QueryRegistry.RunningQuery query, long startNanos,
+            long rowCount, String rc) {
+        queryMetrics.query(sample, query.getQueryType(), rc, rowCount);
+        queryStatistics.record(sql, query.getQueryType(), System.nanoTime() - startNanos, rowCount, rc);
+    }
+
+    /**
+     * Feeds every row of the cursor to the export writer.
+     */
+    private static class RowExporter implements ResultSetExtractor<Long> {
+
+        private final ExportWriter writer;
+        private final QueryRegistry.RunningQuery query;
+        private long rowCount;
+        private IOException clientError;
+
+        RowExporter(ExportWriter writer, QueryRegistry.RunningQuery query) {
+            this.writer = writer;
+            this.query = query;
+        }
+
+        @Override
+        public Long extractData(ResultSet rs) throws SQLException {
+            try {
+                writer.writeHeader(rs.getMetaData());
+                while (rs.next()) {
+                    writer.writeRow(rs);
+                    rowCount++;
+                }
+                writer.finish();
+                return rowCount;
+            } catch (IOException e) {
+                // The client went away: stop the statement now rather than after the rollback.
+                clientError = e;
+                query.cancel();
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class LevelGzipOutputStream extends GZIPOutputStream {
+
+        LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
+        }
+    }
+}
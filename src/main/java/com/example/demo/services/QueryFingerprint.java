@@ -0,0 +1,170 @@
+package com.example.demo.services;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL statement to its shape, the way {@code pg_stat_statements} does. String, dollar
+ * quoted and numeric literals become {@code ?}, comments are dropped, whitespace is collapsed and
+ * everything outside quoted identifiers is lower-cased. Lists of placeholders, in {@code IN (...)}
+ * or multi-row {@code VALUES}, are collapsed, so statements that differ only in list length share
+ * one fingerprint.
+ */
+final class QueryFingerprint {
+
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\?(?:, \\?)+\\)");
+
+    private static final Pattern REPEATED_ROWS = Pattern.compile("(\\((?:\\?|\\?, \\.\\.\\.)\\))(?:, \\1)+");
+
+    private QueryFingerprint() {
+    }
+
+    static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                appendSpace(out);
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i < n && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                appendSpace(out);
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                appendSpace(out);
+            } else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                out.append('?');
+            } else if ((c == 'e' || c == 'E') && i + 1 < n && sql.charAt(i + 1) == '\'' && !identifierBefore(out)) {
+                i = skipEscapeString(sql, i + 1);
+                out.append('?');
+            } else if (c == '"') {
+                int end = skipQuoted(sql, i, '"');
+                out.append(sql, i, end);
+                i = end;
+            } else if (c == '$' && dollarTagEnd(sql, i) > 0) {
+                int tagEnd = dollarTagEnd(sql, i);
+                String tag = sql.substring(i, tagEnd);
+                int close = sql.indexOf(tag, tagEnd);
+                i = close < 0 ? n : close + tag.length();
+                out.append('?');
+            } else if ((Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(sql.charAt(i + 1))))
+                    && !identifierBefore(out)) {
+                i = skipNumber(sql, i);
+                out.append('?');
+            } else {
+                out.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+
+        String normalized = out.toString().trim();
+        while (normalized.endsWith(";")) {
+            normalized = normalized.substring(0, normalized.length() - 1).trim();
+        }
+        normalized = normalized
+            .replaceAll("\\s*,\\s*", ", ")
+            .replaceAll("\\(\\s+", "(")
+            .replaceAll("\\s+\\)", ")");
+        normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("(?, ...)");
+        return REPEATED_ROWS.matcher(normalized).replaceAll("$1, ...");
+    }
+
+    /**
+     * A short stable ID for a normalized statement (64-bit FNV-1a, hex).
+     */
+    static String id(String normalized) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format(Locale.ROOT, "%016x", hash);
+    }
+
+    private static void appendSpace(StringBuilder out) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+            out.append(' ');
+        }
+    }
+
+    /** Whether the last output character continues an identifier, as in {@code t1} or {@code col_2}. */
+    private static boolean identifierBefore(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static int skipEscapeString(String sql, int quote) {
+        int i = quote + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /** End of a dollar-quote opening tag ({@code $$} or {@code $tag$}) at {@code start}, or -1. */
+    private static int dollarTagEnd(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+            if (i == start + 1 && Character.isDigit(sql.charAt(i))) {
+                return -1; // $1 is a positional parameter
+            }
+            i++;
+        }
+        return i < sql.length() && sql.charAt(i) == '$' ? i + 1 : -1;
+    }
+
+    private static int skipNumber(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        if (i < sql.length() && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < sql.length() && (sql.charAt(j) == '+' || sql.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < sql.length() && Character.isDigit(sql.charAt(j))) {
+                i = j;
+                while (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters for the query, AI and ingest paths, exported through
+ * {@code /actuator/prometheus}. All meters are tagged by query type and outcome; the outcome is
+ * derived from the response rc, so it matches what the caller saw.
+ *
+ * <ul>
+ *   <li>{@code queryx.query.duration}: whole request, per type</li>
+ *   <li>{@code queryx.query.phase}: schema_fetch, prompt_build, llm_call, cost_guard,
+ *       sql_execution and serialization</li>
+ *   <li>{@code queryx.query.rows.returned}: rows sent back to callers</li>
+ *   <li>{@code queryx.tabledata.rows.inserted} and {@code queryx.tabledata.ingest}: ingest
+ *       endpoints</li>
+ * </ul>
+ *
+ * Percentile histograms are switched on for every {@code queryx.*} timer in
+ * application.properties.
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String SCHEMA_FETCH = "schema_fetch";
+    public static final String PROMPT_BUILD = "prompt_build";
+    public static final String LLM_CALL = "llm_call";
+    public static final String COST_GUARD = "cost_guard";
+    public static final String SQL_EXECUTION = "sql_execution";
+    public static final String SERIALIZATION = "serialization";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records one phase of a query.
+     */
+    public void phase(Timer.Sample sample, String phase, String queryType, String rc) {
+        sample.stop(Timer.builder("queryx.query.phase")
+            .description("Time spent in each phase of a query")
+            .tag("phase", phase)
+            .tag("type", tagValue(queryType))
+            .tag("outcome", outcome(rc))
+            .register(meterRegistry));
+    }
+
+    /**
+     * Records a finished query and the rows it returned.
+     */
+    public void query(Timer.Sample sample, String queryType, QueryResponse response) {
+        // Statements without a result set report their update count in rowsAffected
+        boolean hasRows = response.getColumns() != null && !response.getColumns().isEmpty();
+        long rows = hasRows && response.getRowsAffected() != null ? response.getRowsAffected() : 0;
+        query(sample, queryType, response.getRc(), rows);
+    }
+
+    public void query(Timer.Sample sample, String queryType, String rc, long rowsReturned) {
+        sample.stop(Timer.builder("queryx.query.duration")
+            .description("End-to-end query time")
+            .tag("type", tagValue(queryType))
+            .tag("outcome", outcome(rc))
+            .register(meterRegistry));
+        if (rowsReturned > 0) {
+            Counter.builder("queryx.query.rows.returned")
+                .description("Rows returned to callers")
+                .tag("type", tagValue(queryType))
+                .register(meterRegistry)
+                .increment(rowsReturned);
+        }
+    }
+
+    /**
+     * Records an ingest request ({@code insert}, {@code stream} or {@code copy}) and the rows it wrote.
+     */
+    public void ingest(Timer.Sample sample, String endpoint, String rc, long rowsInserted) {
+        sample.stop(Timer.builder("queryx.tabledata.ingest")
+            .description("Ingest request time")
+            .tag("endpoint", endpoint)
+            .tag("outcome", outcome(rc))
+            .register(meterRegistry));
+        if (rowsInserted > 0) {
+            Counter.builder("queryx.tabledata.rows.inserted")
+                .description("Rows written by the ingest endpoints")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .increment(rowsInserted);
+        }
+    }
+
+    /**
+     * Maps a response rc to a low-cardinality outcome tag.
+     */
+    static String outcome(String rc) {
+        if (rc == null) {
+            return "unknown";
+        }
+        return switch (rc) {
+            case "200" -> "success";
+            case "207" -> "partial";
+            case "408" -> "timeout";
+            case "422" -> "rejected";
+            case "499" -> "cancelled";
+            case "503" -> "overloaded";
+            default -> rc.startsWith("4") ? "client_error" : "error";
+        };
+    }
+
+    private static String tagValue(String value) {
+        return value == null || value.isEmpty() ? "UNKNOWN" : value;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryParameter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Converts the typed {@link QueryParameter}s of a parameterized query into bind values for
+ * {@link org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate}.
+ */
+final class QueryParameterBinder {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private QueryParameterBinder() {
+    }
+
+    static MapSqlParameterSource bind(List<QueryParameter> parameters) {
+        MapSqlParameterSource source = new MapSqlParameterSource();
+        if (parameters == null) {
+            return source;
+        }
+        Set<String> names = new HashSet<>();
+        for (QueryParameter parameter : parameters) {
+            String name = parameter == null ? null : parameter.getName();
+            if (name == null || !name.matches("^[A-Za-z_][A-Za-z0-9_]*$")) {
+                throw new IllegalArgumentException("Invalid parameter name: " + name);
+            }
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("Duplicate parameter: " + name);
+            }
+
+            String type = parameter.getType() == null ? null : parameter.getType().trim().toLowerCase(Locale.ROOT);
+            if (type == null || type.isEmpty()) {
+                // Let the driver infer the type from the JSON value
+                source.addValue(name, parameter.getValue());
+                continue;
+            }
+
+            int sqlType = sqlType(name, type);
+            Object value = parameter.getValue();
+            if (value instanceof Collection<?> values && !isJson(type)) {
+                List<Object> converted = new ArrayList<>(values.size());
+                for (Object element : values) {
+                    converted.add(convert(name, type, element));
+                }
+                source.addValue(name, converted, sqlType);
+            } else {
+                source.addValue(name, convert(name, type, value), sqlType);
+            }
+        }
+        return source;
+    }
+
+    /**
+     * A string that identifies the bound values, including their types, for cache keys.
+     */
+    static String cacheKey(List<QueryParameter> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder();
+        parameters.stream()
+            .sorted((a, b) -> a.getName().compareTo(b.getName()))
+            .forEach(parameter -> {
+                Object value = parameter.getValue();
+                key.append(parameter.getName()).append(':')
+                    .append(parameter.getType()).append(':')
+                    .append(value == null ? "null" : value.getClass().getSimpleName()).append('=');
+                try {
+                    key.append(OBJECT_MAPPER.writeValueAsString(value));
+                } catch (JsonProcessingException e) {
+                    key.append(value);
+                }
+                key.append('\u0000');
+            });
+        return key.toString();
+    }
+
+    private static int sqlType(String name, String type) {
+        return switch (type) {
+            case "text", "varchar", "string" -> Types.VARCHAR;
+            case "integer", "int", "int4" -> Types.INTEGER;
+            case "bigint", "long", "int8" -> Types.BIGINT;
+            case "numeric", "decimal" -> Types.NUMERIC;
+            case "double", "float8", "float", "real" -> Types.DOUBLE;
+            case "boolean", "bool" -> Types.BOOLEAN;
+            case "date" -> Types.DATE;
+            case "time" -> Types.TIME;
+            case "timestamp" -> Types.TIMESTAMP;
+            case "timestamptz" -> Types.TIMESTAMP_WITH_TIMEZONE;
+            case "uuid", "json", "jsonb" -> Types.OTHER;
+            default -> throw new IllegalArgumentException(
+                "Unsupported type '" + type + "' for parameter '" + name + "'");
+        };
+    }
+
+    private static boolean isJson(String type) {
+        return type.equals("json") || type.equals("jsonb");
+    }
+
+    private static Object convert(String name, String type, Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            String text = value.toString();
+            return switch (type) {
+                case "text", "varchar", "string" -> text;
+                case "integer", "int", "int4" -> value instanceof Number n ? n.intValue() : Integer.parseInt(text.trim());
+                case "bigint", "long", "int8" -> value instanceof Number n ? n.longValue() : Long.parseLong(text.trim());
+                case "numeric", "decimal" -> new BigDecimal(text.trim());
+                case "double", "float8", "float", "real" ->
+                    value instanceof Number n ? n.doubleValue() : Double.parseDouble(text.trim());
+                case "boolean", "bool" -> value instanceof Boolean b ? b : parseBoolean(text);
+                case "date" -> LocalDate.parse(text.trim());
+                case "time" -> LocalTime.parse(text.trim());
+                case "timestamp" -> LocalDateTime.parse(text.trim());
+                case "timestamptz" -> OffsetDateTime.parse(text.trim());
+                case "uuid" -> UUID.fromString(text.trim());
+                case "json", "jsonb" -> value instanceof Map<?, ?> || value instanceof Collection<?>
+                    ? OBJECT_MAPPER.writeValueAsString(value) : text;
+                default -> throw new IllegalArgumentException("Unsupported type '" + type + "'");
+            };
+        } catch (IllegalArgumentException | DateTimeParseException | ArithmeticException | JsonProcessingException e) {
+            throw new IllegalArgumentException(
+                "Parameter '" + name + "' is not a valid " + type + ": " + value, e);
+        }
+    }
+
+    private static Boolean parseBoolean(String text) {
+        return switch (text.trim().toLowerCase(Locale.ROOT)) {
+            case "true", "t", "1", "yes" -> Boolean.TRUE;
+            case "false", "f", "0", "no" -> Boolean.FALSE;
+            default -> throw new IllegalArgumentException("not a boolean");
+        };
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.demo.services;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the queries that are currently executing, so they can be cancelled by ID (through the
+ * cancel endpoint, or when the HTTP client goes away) and are bounded by a statement timeout.
+ *
+ * <p>Every execution path registers a {@link RunningQuery} before it starts, attaches the JDBC
+ * statement once it has been created, and finishes the query when it is done. Cancelling calls
+ * {@link Statement#cancel()}, which makes pgjdbc send a cancel request for the backend, so the
+ * pooled connection is released as soon as the statement unwinds.
+ */
+@Component
+public class QueryRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryRegistry.class);
+
+    /** SQLSTATE PostgreSQL reports for a cancelled statement, both on timeout and on cancel. */
+    public static final String QUERY_CANCELED = "57014";
+
+    @Value("${query.timeout.human-seconds:30}")
+    private int humanTimeoutSeconds;
+
+    @Value("${query.timeout.ai-seconds:30}")
+    private int aiTimeoutSeconds;
+
+    @Value("${query.timeout.parameterized-seconds:30}")
+    private int parameterizedTimeoutSeconds;
+
+    @Value("${query.timeout.stream-seconds:300}")
+    private int streamTimeoutSeconds;
+
+    @Value("${query.timeout.export-seconds:300}")
+    private int exportTimeoutSeconds;
+
+    /** Upper bound for per-request timeouts; 0 disables the bound. */
+    @Value("${query.timeout.max-seconds:600}")
+    private int maxTimeoutSeconds;
+
+    private final Map<String, RunningQuery> running = new ConcurrentHashMap<>();
+
+    /**
+     * A query that is being executed.
+     */
+    public final class RunningQuery {
+
+        private final String id;
+        private final String queryType;
+        private final int timeoutSeconds;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile String sql;
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        private final AtomicInteger queuedTasks = new AtomicInteger();
+        private volatile long queueWaitNanos;
+
+        private RunningQuery(String id, String queryType, int timeoutSeconds) {
+            this.id = id;
+            this.queryType = queryType;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getQueryType() {
+            return queryType;
+        }
+
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Marks work of this query as waiting for a thread; {@link #started(long)} ends the wait.
+         */
+        public void queued() {
+            queuedTasks.incrementAndGet();
+        }
+
+        /**
+         * Ends a wait begun with {@link #queued()} at {@code queuedAtNanos}. The time waited is
+         * taken off the statement timeout.
+         */
+        public void started(long queuedAtNanos) {
+            queuedTasks.decrementAndGet();
+            queueWaitNanos = Math.max(queueWaitNanos, System.nanoTime() - queuedAtNanos);
+        }
+
+        /**
+         * Applies the timeout to the statement and makes it cancellable. Fails right away if the
+         * query was cancelled before its statement existed (e.g. while waiting for the LLM), or if
+         * it spent its whole timeout waiting for a thread. A query may run several statements, one
+         * after the other or at the same time; cancelling it cancels all of them.
+         */
+        public void attach(Statement statement, String sql) throws SQLException {
+            if (timeoutSeconds > 0) {
+                long remainingMs = timeoutSeconds * 1000L - queueWaitNanos / 1_000_000;
+                if (remainingMs <= 0) {
+                    throw new SQLException("Query " + id + " exceeded its timeout while waiting to run.", QUERY_CANCELED);
+                }
+                statement.setQueryTimeout((int) ((remainingMs + 999) / 1000));
+            }
+            this.sql = sql;
+            statements.add(statement);
+            if (cancelled) {
+                throw new SQLException("Query " + id + " was cancelled.", QUERY_CANCELED);
+            }
+        }
+
+        /**
+         * Cancels the statements that are running. Safe to call more than once.
+         */
+        public void cancel() {
+            cancelled = true;
+            for (Statement current : statements) {
+                try {
+                    if (!current.isClosed()) {
+                        current.cancel();
+                    }
+                } catch (SQLException e) {
+                    log.debug("Cancelling query {} failed: {}", id, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Stops tracking a statement that has finished, so a later cancel leaves it alone.
+         */
+        public void detach(Statement statement) {
+            statements.remove(statement);
+        }
+
+        /**
+         * Whether {@code error} means this query was stopped, by cancellation or by its timeout.
+         */
+        public boolean wasStoppedBy(Throwable error) {
+            return cancelled || isQueryCanceled(error);
+        }
+
+        /**
+         * rc for a query stopped by cancellation ("499") or by its timeout ("408").
+         */
+        public String stoppedRc() {
+            return cancelled ? "499" : "408";
+        }
+
+        public String stoppedMessage() {
+            return cancelled
+                ? "Query " + id + " was cancelled."
+                : "Query " + id + " exceeded its timeout of " + timeoutSeconds + " s and was cancelled.";
+        }
+    }
+
+    /**
+     * Registers a query under the client-supplied ID, or a generated one when {@code requestedId}
+     * is empty.
+     *
+     * @throws IllegalArgumentException if the ID is malformed, already in use, or the timeout is negative
+     */
+    public RunningQuery register(String requestedId, String queryType, Integer requestedTimeoutSeconds) {
+        String id = resolveId(requestedId);
+        if (!id.matches("^[A-Za-z0-9_.-]{1,64}$")) {
+            throw new IllegalArgumentException("Invalid queryId: only letters, digits, '.', '_' and '-' are allowed (max 64).");
+        }
+        RunningQuery query = new RunningQuery(id, queryType, timeoutFor(queryType, requestedTimeoutSeconds));
+        if (running.putIfAbsent(id, query) != null) {
+            throw new IllegalArgumentException("A query with id '" + id + "' is already running.");
+        }
+        return query;
+    }
+
+    /**
+     * The client-supplied ID, or a new random one when it is empty. Lets callers know the ID of a
+     * query before it is registered.
+     */
+    public String resolveId(String requestedId) {
+        return requestedId == null || requestedId.isBlank() ? UUID.randomUUID().toString() : requestedId.trim();
+    }
+
+    public void finish(RunningQuery query) {
+        running.remove(query.id, query);
+    }
+
+    /**
+     * Cancels the running query with this ID.
+     *
+     * @return false if no such query is running
+     */
+    public boolean cancel(String id) {
+        RunningQuery query = running.get(id);
+        if (query == null) {
+            return false;
+        }
+        query.cancel();
+        return true;
+    }
+
+    public List<Map<String, Object>> list() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (RunningQuery query : running.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("queryId", query.id);
+            entry.put("queryType", query.queryType);
+            entry.put("sql", query.sql);
+            entry.put("state", query.queuedTasks.get() > 0 && query.statements.isEmpty() ? "queued" : "running");
+            entry.put("runningMs", now - query.startedAt);
+            entry.put("timeoutSeconds", query.timeoutSeconds);
+            entry.put("cancelled", query.cancelled);
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * The timeout for a query: the per-request value when given (capped at max-seconds),
+     * otherwise the default of its query type. 0 means no timeout.
+     */
+    int timeoutFor(String queryType, Integer requestedTimeoutSeconds) {
+        if (requestedTimeoutSeconds != null) {
+            if (requestedTimeoutSeconds < 0) {
+                throw new IllegalArgumentException("timeoutSeconds must not be negative.");
+            }
+            if (maxTimeoutSeconds > 0 && (requestedTimeoutSeconds == 0 || requestedTimeoutSeconds > maxTimeoutSeconds)) {
+                return maxTimeoutSeconds;
+            }
+            return requestedTimeoutSeconds;
+        }
+        return switch (queryType == null ? "" : queryType.toUpperCase(Locale.ROOT)) {
+            case "AI" -> aiTimeoutSeconds;
+            case "PARAMETERIZED" -> parameterizedTimeoutSeconds;
+            case "STREAM" -> streamTimeoutSeconds;
+            case "EXPORT" -> exportTimeoutSeconds;
+            default -> humanTimeoutSeconds;
+        };
+    }
+
+    static boolean isQueryCanceled(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && QUERY_CANCELED.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
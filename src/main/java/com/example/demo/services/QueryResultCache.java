@@ -0,0 +1,273 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Caches the results of read-only SELECT statements run through {@code /query/execute}.
+ *
+ * <p>Entries are keyed on the normalized SQL and result format and capped by an estimate of their
+ * memory footprint. Writes made through the API ({@link TableDataChangedEvent}), DDL
+ * ({@link SchemaChangedEvent}) and any non-read statement drop the whole cache: a statement may
+ * read a table through a view or function whose name says nothing about it, so dropping only the
+ * entries that name the written table could leave stale results behind. Writes made outside the
+ * API are only bounded by the TTL.
+ *
+ * <p>A result is only stored if no invalidation happened while it was being read, so a query
+ * racing with a write can never cache the pre-write data.
+ */
+@Component
+public class QueryResultCache {
+
+    private static final Pattern READ_STATEMENT = Pattern.compile("^\\(*\\s*(select|with)\\b");
+
+    /** Statements that write, lock or return different data on every call are never cached. */
+    private static final Pattern NOT_CACHEABLE = Pattern.compile(
+        "\\b(insert|update|delete|merge|into|for\\s+(update|share|no\\s+key\\s+update|key\\s+share)"
+            + "|now|random|nextval|currval|setval|pg_sleep|clock_timestamp|statement_timestamp"
+            + "|current_timestamp|current_date|current_time|localtime|localtimestamp|txid_current"
+            + "|gen_random_uuid|uuid_generate_v4)\\b");
+
+    /** Statements that may change data or schema, so every cached result is suspect afterwards. */
+    private static final Pattern WRITES = Pattern.compile(
+        "\\b(insert|update|delete|merge|into|truncate|create|alter|drop|copy|call|do|grant|revoke"
+            + "|vacuum|cluster|refresh|reindex|comment|lock|nextval|setval)\\b");
+
+    /** A FROM clause naming a table, view or function; statements without one are not worth caching. */
+    private static final Pattern READS_RELATION = Pattern.compile("\\bfrom\\s+[^\\s()]");
+
+    private static final String LITERAL = "'(?:[^']|'')*'";
+
+    private record Entry(QueryResponse result, int weight) {
+    }
+
+    @Value("${query.result-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${query.result-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${query.result-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${query.result-cache.max-rows:10000}")
+    private int maxRows;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private Cache<String, Entry> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Entry entry) -> entry.weight())
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The current invalidation generation. Read it before running a query and hand it to
+     * {@link #put} so results read across an invalidation are not stored.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public String key(String sql, String resultFormat) {
+        return key(sql, resultFormat, "");
+    }
+
+    /**
+     * Cache key for a parameterized statement; {@code parameterKey} identifies the bound values.
+     */
+    public String key(String sql, String resultFormat, String parameterKey) {
+        return normalize(sql) + '\u0000' + (resultFormat == null ? "" : resultFormat.toUpperCase(Locale.ROOT))
+            + '\u0000' + parameterKey;
+    }
+
+    /**
+     * Returns the cached result for the key, or {@code null}. Callers must not modify it.
+     */
+    public QueryResponse get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(key);
+        return entry != null ? entry.result() : null;
+    }
+
+    /**
+     * Stores a result read while the cache was at {@code generationAtStart}. Statements that are
+     * not cacheable, large results and results that raced with an invalidation are skipped.
+     */
+    public void put(String key, String sql, QueryResponse result, long generationAtStart) {
+        if (!enabled || result.getRowsAffected() == null || result.getRowsAffected() > maxRows) {
+            return;
+        }
+        if (!isCacheable(sql)) {
+            return;
+        }
+        cache.put(key, new Entry(result, estimateWeight(key, result)));
+        if (generation.get() != generationAtStart) {
+            // An invalidation ran while the query was executing; the result may predate it.
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Drops every cached result after a statement that may have written, so it cannot be served
+     * stale. Read-only statements leave the cache untouched.
+     */
+    public void afterStatement(String sql) {
+        if (!isReadOnly(sql)) {
+            invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTableDataChanged(TableDataChangedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("weightBytes", cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * Collapses whitespace and drops a trailing semicolon. Case is kept because it matters inside
+     * literals and quoted identifiers.
+     */
+    static String normalize(String sql) {
+        String normalized = sql.replaceAll("\\s+", " ").trim();
+        return normalized.endsWith(";") ? normalized.substring(0, normalized.length() - 1).trim() : normalized;
+    }
+
+    static boolean isReadOnly(String sql) {
+        String text = stripLiterals(sql);
+        return (READ_STATEMENT.matcher(text).find() || text.startsWith("show ") || text.startsWith("explain "))
+            && !WRITES.matcher(text).find();
+    }
+
+    /**
+     * Whether the result of {@code sql} may be cached: a single read statement that is not
+     * volatile and reads from some table, view or function.
+     */
+    static boolean isCacheable(String sql) {
+        String text = stripLiterals(sql);
+        return READ_STATEMENT.matcher(text).find() && !NOT_CACHEABLE.matcher(text).find() && !text.contains(";")
+            && READS_RELATION.matcher(text).find();
+    }
+
+    /**
+     * Lower-cases the statement and blanks out string literals, so keywords inside them neither
+     * block caching nor hide a write.
+     */
+    private static String stripLiterals(String sql) {
+        return normalize(sql).replaceAll(LITERAL, "''").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Rough heap footprint of a cached result, good enough for the memory cap.
+     */
+    private static int estimateWeight(String key, QueryResponse result) {
+        long bytes = 256L + 2L * key.length();
+        if (result.getData() != null) {
+            for (Map<String, Object> row : result.getData()) {
+                bytes += 64;
+                for (Object value : row.values()) {
+                    bytes += 48 + sizeOf(value);
+                }
+            }
+        }
+        if (result.getRows() != null) {
+            for (Object[] row : result.getRows()) {
+                bytes += 16 + 8L * row.length;
+                for (Object value : row) {
+                    bytes += sizeOf(value);
+                }
+            }
+        }
+        if (result.getColumnData() != null) {
+            for (Object column : result.getColumnData()) {
+                bytes += sizeOfColumn(column);
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long sizeOfColumn(Object column) {
+        if (column instanceof long[] values) {
+            return 16 + 8L * values.length;
+        }
+        if (column instanceof double[] values) {
+            return 16 + 8L * values.length;
+        }
+        if (column instanceof boolean[] values) {
+            return 16 + values.length;
+        }
+        if (column instanceof Object[] values) {
+            long bytes = 16 + 8L * values.length;
+            for (Object value : values) {
+                bytes += sizeOf(value);
+            }
+            return bytes;
+        }
+        return 16;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return 40 + text.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        }
+        if (value instanceof Collection<?> collection) {
+            return 32 + 32L * collection.size();
+        }
+        return 24;
+    }
+}
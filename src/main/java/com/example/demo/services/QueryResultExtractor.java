@@ -0,0 +1,251 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.QueryResponse;
+import com.example.demo.dto.ResultFormat;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Reads a result set into a {@link QueryResponse} in the requested {@link ResultFormat}.
+ * Only the result-related fields are filled (columns, columnTypes, data/rows/columnData,
+ * rowsAffected, resultFormat); rc, message and timings are left to the caller.
+ *
+ * <p>COMPACT and COLUMNAR avoid the per-row map that {@code queryForList} builds, so column
+ * names are sent once instead of once per row.
+ */
+public class QueryResultExtractor implements ResultSetExtractor<QueryResponse> {
+
+    private static final ColumnMapRowMapper COLUMN_MAP_ROW_MAPPER = new ColumnMapRowMapper();
+
+    private final ResultFormat format;
+
+    public QueryResultExtractor(ResultFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public QueryResponse extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        List<String> columnTypes = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(JdbcUtils.lookupColumnName(metaData, i));
+            columnTypes.add(metaData.getColumnTypeName(i));
+        }
+
+        QueryResponse response = new QueryResponse();
+        response.setColumns(columns);
+        // The default format keeps the response exactly as before for existing clients.
+        response.setResultFormat(format == ResultFormat.ROWS ? null : format.name());
+        int rowCount = 0;
+
+        switch (format) {
+            case COMPACT -> {
+                List<Object[]> rows = new ArrayList<>();
+                while (rs.next()) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 1; i <= columnCount; i++) {
+                        row[i - 1] = JdbcUtils.getResultSetValue(rs, i);
+                    }
+                    rows.add(row);
+                }
+                rowCount = rows.size();
+                response.setColumnTypes(columnTypes);
+                response.setRows(rows);
+            }
+            case COLUMNAR -> {
+                ColumnVector[] vectors = new ColumnVector[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    vectors[i - 1] = ColumnVector.forColumn(metaData, i);
+                }
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        vectors[i - 1].read(rs, i);
+                    }
+                    rowCount++;
+                }
+                List<Object> columnData = new ArrayList<>(columnCount);
+                for (ColumnVector vector : vectors) {
+                    columnData.add(vector.toArray());
+                }
+                response.setColumnTypes(columnTypes);
+                response.setColumnData(columnData);
+            }
+            default -> {
+                List<Map<String, Object>> data = new ArrayList<>();
+                while (rs.next()) {
+                    data.add(COLUMN_MAP_ROW_MAPPER.mapRow(rs, rowCount++));
+                }
+                response.setData(data);
+            }
+        }
+
+        response.setRowsAffected(rowCount);
+        return response;
+    }
+
+    /**
+     * Growable per-column buffer. Numeric and boolean columns are kept in primitive arrays until
+     * the first NULL shows up, at which point the column falls back to boxed values.
+     */
+    private abstract static class ColumnVector {
+
+        protected int size;
+
+        static ColumnVector forColumn(ResultSetMetaData metaData, int index) throws SQLException {
+            switch (metaData.getColumnType(index)) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT:
+                    return new LongVector();
+                case Types.REAL, Types.FLOAT, Types.DOUBLE:
+                    return new DoubleVector();
+                case Types.BOOLEAN:
+                    return new BooleanVector();
+                case Types.BIT:
+                    // PostgreSQL reports "bool" as BIT; real bit strings stay generic.
+                    return "bool".equalsIgnoreCase(metaData.getColumnTypeName(index))
+                        ? new BooleanVector() : new ObjectVector();
+                default:
+                    return new ObjectVector();
+            }
+        }
+
+        abstract void read(ResultSet rs, int index) throws SQLException;
+
+        abstract Object toArray();
+
+        protected static int grow(int capacity) {
+            return Math.max(16, capacity + (capacity >> 1));
+        }
+    }
+
+    private static final class ObjectVector extends ColumnVector {
+
+        private Object[] values = new Object[16];
+
+        ObjectVector() {
+        }
+
+        ObjectVector(Object[] boxed, int size) {
+            this.values = boxed;
+            this.size = size;
+        }
+
+        @Override
+        void read(ResultSet rs, int index) throws SQLException {
+            add(JdbcUtils.getResultSetValue(rs, index));
+        }
+
+        void add(Object value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        Object toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class LongVector extends ColumnVector {
+
+        private long[] values = new long[16];
+        private ObjectVector boxed;
+
+        @Override
+        void read(ResultSet rs, int index) throws SQLException {
+            if (boxed != null) {
+                boxed.read(rs, index);
+                return;
+            }
+            long value = rs.getLong(index);
+            if (rs.wasNull()) {
+                boxed = new ObjectVector(Arrays.stream(values, 0, size).boxed().toArray(), size);
+                boxed.add(null);
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        Object toArray() {
+            return boxed != null ? boxed.toArray() : Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DoubleVector extends ColumnVector {
+
+        private double[] values = new double[16];
+        private ObjectVector boxed;
+
+        @Override
+        void read(ResultSet rs, int index) throws SQLException {
+            if (boxed != null) {
+                boxed.read(rs, index);
+                return;
+            }
+            double value = rs.getDouble(index);
+            if (rs.wasNull()) {
+                boxed = new ObjectVector(Arrays.stream(values, 0, size).boxed().toArray(), size);
+                boxed.add(null);
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        Object toArray() {
+            return boxed != null ? boxed.toArray() : Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class BooleanVector extends ColumnVector {
+
+        private boolean[] values = new boolean[16];
+        private ObjectVector boxed;
+
+        @Override
+        void read(ResultSet rs, int index) throws SQLException {
+            if (boxed != null) {
+                boxed.read(rs, index);
+                return;
+            }
+            boolean value = rs.getBoolean(index);
+            if (rs.wasNull()) {
+                Object[] copy = new Object[Math.max(16, values.length)];
+                for (int i = 0; i < size; i++) {
+                    copy[i] = values[i];
+                }
+                boxed = new ObjectVector(copy, size);
+                boxed.add(null);
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        Object toArray() {
+            return boxed != null ? boxed.toArray() : Arrays.copyOf(values, size);
+        }
+    }
+}
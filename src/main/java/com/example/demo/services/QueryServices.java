@@ -1,14 +1,25 @@
 package com.example.demo.services;
 
+import com.example.demo.client.GeminiClient;
 import com.example.demo.dto.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.springframework.beans.factory.annotation.*;
-import org.springframework.http.*;
+import jakarta.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 public class QueryServices {
@@ -16,18 +27,69 @@ public class QueryServices {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
     @Autowired
     private SchemaService schemaService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private TranslationCache translationCache;
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private QueryCostGuard queryCostGuard;
 
-    @Value("${gemini.api.key:}")
-    private String geminiApiKey;
+    @Autowired
+    private QueryStatistics queryStatistics;
 
-    @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/gemini-pro:generateContent}")
-    private String geminiApiUrl;
+    @Autowired
+    private ReadReplicaRouting readReplicaRouting;
 
-    private static final RestTemplate REST_TEMPLATE = new RestTemplate();
+    @Autowired
+    private PromptCompactor promptCompactor;
+
+    /**
+     * Runs query SQL; AI queries go there once the LLM has answered, so request threads never wait on Gemini.
+     */
+    @Autowired
+    private QueryExecutor queryExecutor;
+
+    /**
+     * Number of parsed SQL templates kept by {@link NamedParameterJdbcTemplate}.
+     */
+    @Value("${query.parameterized.template-cache-size:512}")
+    private int templateCacheSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Identical AI requests arriving while the first one waits for the LLM share its answer.
+     */
+    @Value("${query.ai.coalesce:true}")
+    private boolean coalesce;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SingleFlight<String, String> llmCalls;
+
+    @PostConstruct
+    void init() {
+        namedParameterJdbcTemplate.setCacheLimit(templateCacheSize);
+        llmCalls = new SingleFlight<>("llm_call", coalesce, meterRegistry);
+    }
 
     public AIQuery createAIQuery(QueryRequest queryRequest){
         AIQuery aiQuery = new AIQuery();
@@ -43,187 +105,659 @@ public class QueryServices {
     }
 
     public Map<String,Object> createAIJsonPromptFormat(QueryRequest queryRequest){
-        AIQuery aiQuery = createAIQuery(queryRequest);
-        
         // Fetch real schema from database
         Map<String, Map<String, Map<String, Object>>> tableSchemas = 
             schemaService.getListOfTableSchemas(queryRequest.getTableNames());
-        
-        // Build schema description for AI
-        StringBuilder schemaDescription = new StringBuilder();
-        for (Map.Entry<String, Map<String, Map<String, Object>>> entry : tableSchemas.entrySet()) {
-            String tableName = entry.getKey();
-            Map<String, Object> columns = (Map<String, Object>) entry.getValue().get("columns");
-            
-            schemaDescription.append("Table: ").append(tableName).append("\n");
-            schemaDescription.append("Columns: ");
-            
-            List<String> columnNames = new ArrayList<>(columns.keySet());
-            schemaDescription.append(String.join(", ", columnNames));
-            schemaDescription.append("\n\n");
-        }
-        
+        return createAIJsonPromptFormat(queryRequest, tableSchemas);
+    }
+
+    public Map<String,Object> createAIJsonPromptFormat(QueryRequest queryRequest,
+            Map<String, Map<String, Map<String, Object>>> tableSchemas){
+        return createAIJsonPromptFormat(queryRequest, tableSchemas, false, new PromptSummary());
+    }
+
+    /**
+     * Builds the prompt with the schema description pruned by {@link PromptCompactor} to fit the
+     * token budget. The tables and columns that made it into the prompt are set on {@code summary}.
+     *
+     * @param autoSelected whether the tables were picked by relevance, so the least relevant may
+     *     be left out entirely
+     */
+    private Map<String,Object> createAIJsonPromptFormat(QueryRequest queryRequest,
+            Map<String, Map<String, Map<String, Object>>> tableSchemas, boolean autoSelected, PromptSummary summary){
+        AIQuery aiQuery = createAIQuery(queryRequest);
+        aiQuery.setTableNames(new ArrayList<>(tableSchemas.keySet()));
+
+        String schemaDescription = promptCompactor.describe(aiQuery.getUserInput(), tableSchemas,
+            fixedPromptChars(aiQuery), autoSelected, summary);
+        aiQuery.setTableNames(summary.getTables());
+
         Map<String, Object> aiJsonPrompt = new HashMap<>();
         aiJsonPrompt.put("requirements", aiQuery.getRequirements());
         aiJsonPrompt.put("security", aiQuery.getSecurityGuards());
         aiJsonPrompt.put("database_type", aiQuery.getDatabaseType());
         aiJsonPrompt.put("table_names", aiQuery.getTableNames());
-        aiJsonPrompt.put("table_schemas", schemaDescription.toString());
+        aiJsonPrompt.put("table_schemas", schemaDescription);
         aiJsonPrompt.put("user_input", aiQuery.getUserInput());
         aiJsonPrompt.put("expected_return_type", aiQuery.getExpectedReturnType());
         return aiJsonPrompt;
     }
 
+    /**
+     * Characters the prompt takes besides the schema description: the fixed instructions, the
+     * question, the table names and the JSON keys around them.
+     */
+    private static int fixedPromptChars(AIQuery aiQuery) {
+        int chars = 160;
+        for (String requirement : aiQuery.getRequirements()) {
+            chars += requirement.length() + 3;
+        }
+        for (String guard : aiQuery.getSecurityGuards()) {
+            chars += guard.length() + 3;
+        }
+        for (String tableName : aiQuery.getTableNames()) {
+            chars += tableName.length() + 3;
+        }
+        return chars + aiQuery.getDatabaseType().length() + aiQuery.getExpectedReturnType().length()
+            + (aiQuery.getUserInput() == null ? 0 : aiQuery.getUserInput().length());
+    }
+
     public QueryResponse executeHumanQuery(String sqlQuery){
+        return executeHumanQuery(sqlQuery, null);
+    }
+
+    /**
+     * Runs the SQL on the calling thread.
+     */
+    public QueryResponse executeHumanQuery(String sqlQuery, String resultFormat){
+        QueryRegistry.RunningQuery query;
+        try {
+            query = queryRegistry.register(null, "HUMAN", null);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        return runHumanQuery(sqlQuery, resultFormat, query);
+    }
+
+    /**
+     * Runs the SQL on the query executor under {@code queryId} (generated when null), bounded by
+     * {@code timeoutSeconds} or query.timeout.human-seconds. The query is registered before this
+     * method returns, so it can be cancelled right away.
+     */
+    public CompletableFuture<QueryResponse> executeHumanQueryAsync(String sqlQuery, String resultFormat,
+            String queryId, Integer timeoutSeconds){
+        QueryRegistry.RunningQuery query;
+        try {
+            query = queryRegistry.register(queryId, "HUMAN", timeoutSeconds);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(badRequest(e.getMessage()));
+        }
+        return queryExecutor.submit(query, () -> runHumanQuery(sqlQuery, resultFormat, query))
+            .exceptionally(error -> notRun(error, "HUMAN", query));
+    }
+
+    private QueryResponse runHumanQuery(String sqlQuery, String resultFormat, QueryRegistry.RunningQuery query){
         QueryResponse response = new QueryResponse();
         long startTime = System.currentTimeMillis();
+        Timer.Sample sample = queryMetrics.start();
         try {
-            var result = jdbcTemplate.queryForList(sqlQuery);
+            ResultFormat format = ResultFormat.from(resultFormat);
+            response = runQuery(sqlQuery, format, query);
             long endTime = System.currentTimeMillis();
             response.setRc("200");
             response.setMessage("Query executed successfully.");
-            response.setData(result);
             response.setExecutionTimeMs(endTime - startTime);
             response.setExecutedQuery(sqlQuery);
-            response.setRowsAffected(result.size());
             response.setQueryType("HUMAN");
 
+        } catch (IllegalArgumentException e) {
+            response.setRc("400");
+            response.setMessage(e.getMessage());
+        } catch (Exception e) {
+            if (!reportStopped(response, query, e)) {
+                response.setRc("500");
+                response.setMessage("Error executing query: " + e.getMessage());
+            }
+        } finally {
+            response.setQueryId(query.getId());
+            queryRegistry.finish(query);
+            queryMetrics.query(sample, "HUMAN", response);
+        }
+        return response;
+    }
+
+    /**
+     * Runs the prepared statement on the calling thread.
+     */
+    public QueryResponse executeParameterizedQuery(QueryRequest queryRequest){
+        QueryRegistry.RunningQuery query;
+        try {
+            query = registerParameterized(queryRequest);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        return runParameterizedQuery(queryRequest, query);
+    }
+
+    /**
+     * Runs {@code sqlTemplate} as a prepared statement with its typed named parameters bound.
+     * The same template with different values reuses the parsed statement, and once pgjdbc's
+     * prepareThreshold is reached, the server-side plan as well.
+     */
+    public CompletableFuture<QueryResponse> executeParameterizedQueryAsync(QueryRequest queryRequest){
+        QueryRegistry.RunningQuery query;
+        try {
+            query = registerParameterized(queryRequest);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(badRequest(e.getMessage()));
+        }
+        return queryExecutor.submit(query, () -> runParameterizedQuery(queryRequest, query))
+            .exceptionally(error -> notRun(error, "PARAMETERIZED", query));
+    }
+
+    private QueryRegistry.RunningQuery registerParameterized(QueryRequest queryRequest){
+        if (queryRequest == null || queryRequest.getSqlTemplate() == null
+            || queryRequest.getSqlTemplate().trim().isEmpty()) {
+            throw new IllegalArgumentException("sqlTemplate is required for parameterized queries.");
+        }
+        return queryRegistry.register(queryRequest.getQueryId(), "PARAMETERIZED", queryRequest.getTimeoutSeconds());
+    }
+
+    private QueryResponse runParameterizedQuery(QueryRequest queryRequest, QueryRegistry.RunningQuery query){
+        QueryResponse response = new QueryResponse();
+        long startTime = System.currentTimeMillis();
+        Timer.Sample sample = queryMetrics.start();
+        try {
+            ResultFormat format = ResultFormat.from(queryRequest.getResultFormat());
+            MapSqlParameterSource parameters = QueryParameterBinder.bind(queryRequest.getParameters());
+            response = runQuery(queryRequest.getSqlTemplate(), parameters,
+                QueryParameterBinder.cacheKey(queryRequest.getParameters()), format, query);
+            long endTime = System.currentTimeMillis();
+            response.setRc("200");
+            response.setMessage("Query executed successfully.");
+            response.setExecutionTimeMs(endTime - startTime);
+            response.setExecutedQuery(queryRequest.getSqlTemplate());
+            response.setQueryType("PARAMETERIZED");
+
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            response.setRc("400");
+            response.setMessage(e.getMessage());
+        } catch (DataAccessException e) {
+            if (!reportStopped(response, query, e)) {
+                response.setRc("500");
+                response.setMessage("Error executing query: " + e.getMostSpecificCause().getMessage());
+            }
         } catch (Exception e) {
             response.setRc("500");
             response.setMessage("Error executing query: " + e.getMessage());
+        } finally {
+            response.setQueryId(query.getId());
+            queryRegistry.finish(query);
+            queryMetrics.query(sample, "PARAMETERIZED", response);
         }
         return response;
     }
 
-    public QueryResponse executeAIQuery(QueryRequest queryRequest){
+    /**
+     * Translates the natural language request into SQL through Gemini without executing it.
+     * On success the response carries rc "200" together with the generated and cleaned SQL.
+     */
+    public QueryResponse generateAIQuery(QueryRequest queryRequest){
+        return generateAIQueryAsync(queryRequest).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #generateAIQuery(QueryRequest)}: the schema lookup and prompt
+     * are built on the calling thread, the Gemini call completes the returned future.
+     */
+    public CompletableFuture<QueryResponse> generateAIQueryAsync(QueryRequest queryRequest){
+        return translateAsync(queryRequest).thenApply(GeneratedQuery::response);
+    }
+
+    /**
+     * SQL generated for an AI query, with the translation to cache once that SQL has run
+     * successfully; {@code translation} is null when there is nothing to cache.
+     */
+    public record GeneratedQuery(QueryResponse response, String cacheKey, TranslationCache.Translation translation) {
+    }
+
+    /**
+     * As {@link #generateAIQueryAsync(QueryRequest)}, but a new translation is not cached yet:
+     * the caller passes the result to {@link #cacheTranslation} once the SQL has run successfully.
+     */
+    public CompletableFuture<GeneratedQuery> translateAsync(QueryRequest queryRequest){
         QueryResponse response = new QueryResponse();
         long startTime = System.currentTimeMillis();
+        response.setQueryType("AI");
 
         if (queryRequest == null || queryRequest.getNaturalLanguageQuery() == null
             || queryRequest.getNaturalLanguageQuery().trim().isEmpty()) {
             response.setRc("400");
             response.setMessage("Natural language query is required for AI generation.");
             response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
-            return response;
+            return CompletableFuture.completedFuture(new GeneratedQuery(response, null, null));
         }
 
+        String cacheKey;
+        String promptJson;
+        List<String> tableNames;
+        String phase = QueryMetrics.SCHEMA_FETCH;
+        Timer.Sample phaseSample = queryMetrics.start();
         try {
-            Map<String, Object> prompt = createAIJsonPromptFormat(queryRequest);
-            String promptJson = objectMapper.writeValueAsString(prompt);
-            
-            String generatedSql = callGeminiAPI(promptJson);
-
-            // Remove newlines and normalize whitespace
-            String cleanedSql = generatedSql
-                .replaceAll("\\n", " ")
-                .replaceAll("\\s+", " ")
-                .trim();
-            
-            if (cleanedSql.endsWith(";")) {
-                cleanedSql = cleanedSql.substring(0, cleanedSql.length() - 1).trim();
+            // Without tableNames, describe the tables that match the question best
+            boolean autoSelect = queryRequest.getTableNames() == null || queryRequest.getTableNames().isEmpty();
+            Map<String, Map<String, Map<String, Object>>> tableSchemas = autoSelect
+                ? promptCompactor.selectTables(queryRequest.getNaturalLanguageQuery(), schemaService.getAllTableSchemas())
+                : schemaService.getListOfTableSchemas(queryRequest.getTableNames());
+            tableNames = new ArrayList<>(tableSchemas.keySet());
+            queryMetrics.phase(phaseSample, phase, "AI", "200");
+            phase = null;
+
+            // Same question against the same schema: reuse the earlier translation
+            cacheKey = translationCache.key(queryRequest.getNaturalLanguageQuery(), tableNames, tableSchemas);
+            TranslationCache.Translation cached = translationCache.get(cacheKey);
+            if (cached != null) {
+                response.setRc("200");
+                response.setMessage("AI query generated successfully.");
+                response.setGeneratedSql(cached.generatedSql());
+                response.setExecutedQuery(cached.cleanedSql());
+                response.setTranslationCached(true);
+                response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+                return CompletableFuture.completedFuture(new GeneratedQuery(response, cacheKey, null));
             }
 
-            // NOW EXECUTE THE GENERATED SQL
-            var result = jdbcTemplate.queryForList(cleanedSql);
-            
-            response.setRc("200");
-            response.setMessage("AI query generated and executed successfully.");
-            response.setGeneratedSql(generatedSql);
-            response.setData(result);
-            response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
-            response.setExecutedQuery(cleanedSql);
-            response.setRowsAffected(result.size());
-            response.setQueryType("AI");
-            
+            phase = QueryMetrics.PROMPT_BUILD;
+            phaseSample = queryMetrics.start();
+            PromptSummary promptSummary = new PromptSummary();
+            promptSummary.setTableSelection(autoSelect ? "auto" : "requested");
+            Map<String, Object> prompt = createAIJsonPromptFormat(queryRequest, tableSchemas, autoSelect, promptSummary);
+            promptJson = objectMapper.writeValueAsString(prompt);
+            promptSummary.setCharacters(promptJson.length());
+            promptSummary.setEstimatedTokens(PromptCompactor.estimateTokens(promptJson.length()));
+            response.setPrompt(promptSummary);
+            queryMetrics.phase(phaseSample, phase, "AI", "200");
+
         } catch (JsonProcessingException e) {
+            queryMetrics.phase(phaseSample, phase, "AI", "500");
             response.setRc("500");
             response.setMessage("Failed to build AI prompt: " + e.getMessage());
+            response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return CompletableFuture.completedFuture(new GeneratedQuery(response, null, null));
         } catch (Exception e) {
+            if (phase != null) {
+                queryMetrics.phase(phaseSample, phase, "AI", "500");
+            }
             response.setRc("500");
             response.setMessage("Failed to execute AI query: " + e.getMessage());
+            response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return CompletableFuture.completedFuture(new GeneratedQuery(response, null, null));
         }
 
-        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
-        return response;
+        // Same question against the same schema already waiting for the LLM: share its answer
+        Timer.Sample llmSample = queryMetrics.start();
+        SingleFlight.Call<String> llmCall = llmCalls.submit(cacheKey, () -> geminiClient.generateSqlAsync(promptJson));
+        return llmCall.result().handle((generatedSql, error) -> {
+            queryMetrics.phase(llmSample, QueryMetrics.LLM_CALL, "AI", error == null ? "200" : "500");
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                response.setRc("500");
+                response.setMessage("Failed to execute AI query: " + cause.getMessage());
+                response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+                return new GeneratedQuery(response, cacheKey, null);
+            }
+
+            String cleanedSql = normalizeGeneratedSql(generatedSql);
+
+            response.setRc("200");
+            response.setMessage("AI query generated successfully.");
+            response.setGeneratedSql(generatedSql);
+            response.setExecutedQuery(cleanedSql);
+            response.setTranslationCached(false);
+            response.setTranslationShared(llmCall.shared() ? true : null);
+            response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return new GeneratedQuery(response, cacheKey,
+                new TranslationCache.Translation(generatedSql, cleanedSql, tableNames));
+        });
     }
 
-    private String callGeminiAPI(String jsonPrompt) throws Exception {
-        if (geminiApiKey == null || geminiApiKey.trim().isEmpty()) {
-            throw new IllegalStateException("Missing Gemini API key");
+    /**
+     * Caches the translation of {@code generated}. Only called after its SQL has run successfully,
+     * so SQL that fails to plan, is refused by the cost guard or fails at runtime is asked for
+     * again next time instead of being replayed from the cache.
+     */
+    public void cacheTranslation(GeneratedQuery generated){
+        if (generated.translation() != null) {
+            translationCache.put(generated.cacheKey(), generated.translation());
         }
+    }
 
-        Map<String, Object> requestBody = new HashMap<>();
-        List<Map<String, Object>> contents = new ArrayList<>();
-        Map<String, Object> content = new HashMap<>();
-        List<Map<String, String>> parts = new ArrayList<>();
-        Map<String, String> part = new HashMap<>();
-        part.put("text", jsonPrompt);
-        parts.add(part);
-        content.put("parts", parts);
-        contents.add(content);
-        requestBody.put("contents", contents);
+    public QueryResponse executeAIQuery(QueryRequest queryRequest){
+        return executeAIQueryAsync(queryRequest).join();
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * Generates the SQL asynchronously and then executes it on the query executor. The query is
+     * registered under its queryId from the start, so it can be cancelled while Gemini is still
+     * answering; the generated SQL then never runs.
+     */
+    public CompletableFuture<QueryResponse> executeAIQueryAsync(QueryRequest queryRequest){
+        long startTime = System.currentTimeMillis();
+        Timer.Sample sample = queryMetrics.start();
+        QueryRegistry.RunningQuery query;
+        try {
+            query = queryRegistry.register(queryRequest == null ? null : queryRequest.getQueryId(), "AI",
+                queryRequest == null ? null : queryRequest.getTimeoutSeconds());
+        } catch (IllegalArgumentException e) {
+            QueryResponse response = badRequest(e.getMessage());
+            response.setQueryType("AI");
+            return CompletableFuture.completedFuture(response);
+        }
+        return translateAsync(queryRequest)
+            .thenCompose(generated -> {
+                QueryResponse response = generated.response();
+                if (!"200".equals(response.getRc())) {
+                    return CompletableFuture.completedFuture(response);
+                }
+                return queryExecutor.submit(query, () -> executeGeneratedQuery(queryRequest, response, startTime, query))
+                    .exceptionally(error -> notExecuted(response, error))
+                    .thenApply(result -> {
+                        if ("200".equals(result.getRc())) {
+                            cacheTranslation(generated);
+                        }
+                        return result;
+                    });
+            })
+            .exceptionally(error -> {
+                QueryResponse response = new QueryResponse();
+                response.setRc("500");
+                response.setMessage("Failed to execute AI query: " + error.getMessage());
+                response.setQueryType("AI");
+                response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+                return response;
+            })
+            .whenComplete((response, error) -> {
+                response.setQueryId(query.getId());
+                queryRegistry.finish(query);
+                queryMetrics.query(sample, "AI", response);
+            });
+    }
 
-        String url = geminiApiUrl + "?key=" + geminiApiKey;
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    /**
+     * The LLM's SQL on one line, without the trailing semicolon.
+     */
+    static String normalizeGeneratedSql(String generatedSql) {
+        // Remove newlines and normalize whitespace
+        String cleanedSql = generatedSql
+            .replaceAll("\\n", " ")
+            .replaceAll("\\s+", " ")
+            .trim();
+
+        if (cleanedSql.endsWith(";")) {
+            cleanedSql = cleanedSql.substring(0, cleanedSql.length() - 1).trim();
+        }
+        return cleanedSql;
+    }
 
-        ResponseEntity<Map<String, Object>> response = REST_TEMPLATE.exchange(
-            url,
-            HttpMethod.POST,
-            entity,
-            new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {});
+    /**
+     * Checks and runs the SQL of a successfully generated AI query; other responses are returned
+     * as they are.
+     */
+    QueryResponse executeGeneratedQuery(QueryRequest queryRequest, QueryResponse response, long startTime,
+            QueryRegistry.RunningQuery query){
+        if (!"200".equals(response.getRc())) {
+            return response;
+        }
+
+        try {
+            ResultFormat format = ResultFormat.from(queryRequest.getResultFormat());
+            if (!applyCostGuard(response, query)) {
+                response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+                return response;
+            }
+
+            // NOW EXECUTE THE GENERATED SQL
+            QueryResponse result = runQuery(response.getExecutedQuery(), format, query);
+
+            response.setMessage("AI query generated and executed successfully.");
+            copyResult(result, response);
 
-        if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-            return extractSqlFromGeminiResponse(response.getBody());
+        } catch (IllegalArgumentException e) {
+            response.setRc("400");
+            response.setMessage(e.getMessage());
+        } catch (Exception e) {
+            if (!reportStopped(response, query, e)) {
+                response.setRc("500");
+                response.setMessage("Failed to execute AI query: " + e.getMessage());
+            }
         }
 
-        throw new IllegalStateException("Gemini API refused the request");
+        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * Checks the generated SQL in {@code generated} with the cost guard before it runs. The plan
+     * summary is added to the response, and the SQL is replaced when the guard added a LIMIT.
+     *
+     * @return false if the statement must not run; rc and message of {@code generated} then say why
+     */
+    public boolean applyCostGuard(QueryResponse generated, QueryRegistry.RunningQuery query) {
+        if (!queryCostGuard.isEnabled()) {
+            return true;
+        }
+        Timer.Sample sample = queryMetrics.start();
+        String rc = "500";
+        try {
+            QueryCostGuard.Verdict verdict = queryCostGuard.check(generated.getExecutedQuery(), query);
+            generated.setPlan(verdict.plan());
+            if (verdict.isRejected()) {
+                rc = "422";
+                generated.setRc(rc);
+                generated.setMessage(verdict.rejection());
+                return false;
+            }
+            generated.setExecutedQuery(verdict.sql());
+            rc = "200";
+            return true;
+        } catch (Exception e) {
+            if (!reportStopped(generated, query, e)) {
+                generated.setRc("500");
+                generated.setMessage("Failed to check AI query cost: " + e.getMessage());
+            }
+            rc = generated.getRc();
+            return false;
+        } finally {
+            queryMetrics.phase(sample, QueryMetrics.COST_GUARD, "AI", rc);
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private String extractSqlFromGeminiResponse(Map<String, Object> body) throws Exception {
-        List<Map<String, Object>> candidates = (List<Map<String, Object>>) body.get("candidates");
-        if (candidates == null || candidates.isEmpty()) {
-            throw new IllegalStateException("No candidates returned by Gemini");
+    /**
+     * {@link #applyCostGuard} on the query executor, so its EXPLAIN waits for a thread like any
+     * other statement, with the wait counted against the query's timeout.
+     *
+     * @return false if the statement must not run; rc and message of {@code generated} then say
+     *         why, "503" when the queue was full
+     */
+    public CompletableFuture<Boolean> applyCostGuardAsync(QueryResponse generated, QueryRegistry.RunningQuery query) {
+        if (!queryCostGuard.isEnabled()) {
+            return CompletableFuture.completedFuture(true);
         }
+        return queryExecutor.submit(query, () -> applyCostGuard(generated, query))
+            .exceptionally(error -> {
+                notExecuted(generated, error);
+                return false;
+            });
+    }
+
+    /**
+     * Response for a query whose task failed to run: rc "503" when the query executor's queue
+     * was full, "500" otherwise. A rejected query is finished here, since the code that would
+     * have finished it never ran.
+     */
+    private QueryResponse notRun(Throwable error, String queryType, QueryRegistry.RunningQuery query) {
+        QueryResponse response = notExecuted(new QueryResponse(), error);
+        response.setQueryType(queryType);
+        response.setQueryId(query.getId());
+        if (QueryExecutor.isRejected(error)) {
+            queryRegistry.finish(query);
+            queryMetrics.query(queryMetrics.start(), queryType, response);
+        }
+        return response;
+    }
+
+    private QueryResponse notExecuted(QueryResponse response, Throwable error) {
+        if (QueryExecutor.isRejected(error)) {
+            response.setRc("503");
+            response.setMessage(queryExecutor.rejectionMessage());
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            response.setRc("500");
+            response.setMessage("Error executing query: " + cause.getMessage());
+        }
+        return response;
+    }
 
-        Map<String, Object> firstCandidate = candidates.get(0);
-        Map<String, Object> content = (Map<String, Object>) firstCandidate.get("content");
-        if (content == null) {
-            throw new IllegalStateException("No content section in Gemini response");
+    private QueryResponse badRequest(String message) {
+        QueryResponse response = new QueryResponse();
+        response.setRc("400");
+        response.setMessage(message);
+        return response;
+    }
+
+    /**
+     * Fills rc/message for a query stopped by cancellation or its timeout.
+     *
+     * @return false if {@code error} is an ordinary failure
+     */
+    private boolean reportStopped(QueryResponse response, QueryRegistry.RunningQuery query, Exception error) {
+        if (!query.wasStoppedBy(error)) {
+            return false;
         }
+        response.setRc(query.stoppedRc());
+        response.setMessage(query.stoppedMessage());
+        return true;
+    }
 
-        List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-        if (parts == null || parts.isEmpty()) {
-            throw new IllegalStateException("No parts returned by Gemini");
+    private void copyResult(QueryResponse result, QueryResponse target) {
+        target.setColumns(result.getColumns());
+        target.setColumnTypes(result.getColumnTypes());
+        target.setResultFormat(result.getResultFormat());
+        target.setData(result.getData());
+        target.setRows(result.getRows());
+        target.setColumnData(result.getColumnData());
+        target.setRowsAffected(result.getRowsAffected());
+        target.setResultCached(result.getResultCached());
+    }
+
+    /**
+     * Runs the statement, serving read-only SELECTs from the result cache when it is enabled.
+     * The returned response is always a fresh object, so callers may fill in rc, message and timings.
+     */
+    QueryResponse runQuery(String sql, ResultFormat format, QueryRegistry.RunningQuery query) {
+        return runQuery(sql, null, "", format, query);
+    }
+
+    /**
+     * As {@link #runQuery(String, ResultFormat, QueryRegistry.RunningQuery)}; when {@code parameters} is not null the SQL is a
+     * named-parameter template executed as a prepared statement, and {@code parameterKey}
+     * identifies the bound values in the cache key.
+     */
+    private QueryResponse runQuery(String sql, MapSqlParameterSource parameters, String parameterKey,
+            ResultFormat format, QueryRegistry.RunningQuery query) {
+        if (!queryResultCache.isEnabled()) {
+            return execute(sql, parameters, format, query);
         }
 
-        String text = (String) parts.get(0).get("text");
-        if (text == null) {
-            throw new IllegalStateException("Empty text returned from Gemini");
+        String key = queryResultCache.key(sql, format.name(), parameterKey);
+        QueryResponse response = new QueryResponse();
+        QueryResponse cached = queryResultCache.get(key);
+        if (cached != null) {
+            copyResult(cached, response);
+            response.setResultCached(true);
+            return response;
         }
 
-        text = text.strip();
-        
-        // Remove markdown code fences
-        if (text.startsWith("```sql")) {
-            text = text.substring(6).strip();
-        } else if (text.startsWith("```")) {
-            text = text.substring(3).strip();
+        long generation = queryResultCache.generation();
+        QueryResponse result;
+        try {
+            result = execute(sql, parameters, format, query);
+        } finally {
+            // A write can fail halfway (or succeed and then fail to return rows); drop the cache either way.
+            queryResultCache.afterStatement(sql);
         }
-        if (text.endsWith("```")) {
-            text = text.substring(0, text.length() - 3).strip();
+        queryResultCache.put(key, sql, result, generation);
+        copyResult(result, response);
+        response.setResultCached(false);
+        return response;
+    }
+
+    /**
+     * Executes on a statement registered with {@code query}, so it carries the query's timeout and
+     * can be cancelled while it runs. Read-only statements run on a replica when replicas are
+     * configured.
+     */
+    QueryResponse execute(String sql, MapSqlParameterSource parameters, ResultFormat format,
+            QueryRegistry.RunningQuery query) {
+        Timer.Sample sample = queryMetrics.start();
+        long startNanos = System.nanoTime();
+        String rc = "500";
+        long rows = 0;
+        try {
+            QueryResponse result = readReplicaRouting.forStatement(sql,
+                () -> executeStatement(sql, parameters, format, query));
+            rc = "200";
+            rows = result.getRowsAffected() == null ? 0 : result.getRowsAffected();
+            return result;
+        } catch (RuntimeException e) {
+            if (query.wasStoppedBy(e)) {
+                rc = query.stoppedRc();
+            }
+            throw e;
+        } finally {
+            queryMetrics.phase(sample, QueryMetrics.SQL_EXECUTION, query.getQueryType(), rc);
+            queryStatistics.record(sql, query.getQueryType(), System.nanoTime() - startNanos, rows, rc);
         }
-        
-        // Remove trailing semicolon if present
-        text = text.trim();
-        if (text.endsWith(";")) {
-            text = text.substring(0, text.length() - 1).trim();
+    }
+
+    private QueryResponse executeStatement(String sql, MapSqlParameterSource parameters, ResultFormat format,
+            QueryRegistry.RunningQuery query) {
+        QueryResultExtractor extractor = new QueryResultExtractor(format);
+        if (parameters == null) {
+            return jdbcTemplate.execute((Statement stmt) -> {
+                query.attach(stmt, sql);
+                try {
+                    if (stmt.execute(sql)) {
+                        try (ResultSet rs = stmt.getResultSet()) {
+                            return extractor.extractData(rs);
+                        }
+                    }
+                    return updateCount(stmt.getUpdateCount());
+                } finally {
+                    query.detach(stmt);
+                }
+            });
         }
+        return namedParameterJdbcTemplate.execute(sql, parameters, (PreparedStatement ps) -> {
+            query.attach(ps, sql);
+            try {
+                if (ps.execute()) {
+                    return extractor.extractData(ps.getResultSet());
+                }
+                return updateCount(ps.getUpdateCount());
+            } finally {
+                query.detach(ps);
+            }
+        });
+    }
 
-        return text;
+    /**
+     * Result of an INSERT/UPDATE/DELETE without RETURNING (or DDL): no columns, just the update count.
+     */
+    private static QueryResponse updateCount(int count) {
+        QueryResponse result = new QueryResponse();
+        result.setColumns(List.of());
+        result.setRowsAffected(Math.max(count, 0));
+        return result;
     }
 
-}
\ No newline at end of file
+}
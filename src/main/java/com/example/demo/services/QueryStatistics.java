@@ -0,0 +1,192 @@
+package com.example.demo.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-fingerprint statistics for the statements this service executes, the app's own view of
+ * {@code pg_stat_statements}. Each executed statement is normalized by {@link QueryFingerprint}.
+ * For each fingerprint, calls, total and max time, rows and errors are accumulated. Statements
+ * slower than {@code query.stats.slow-threshold-ms} are logged to the {@code queryx.slow-query}
+ * logger and kept in a bounded slow-query log.
+ *
+ * <p>At most {@code query.stats.max-fingerprints} fingerprints are tracked; beyond that, the
+ * least valuable ones (Caffeine's size-based eviction) are dropped. Statements served from the
+ * result cache are not executed and are not counted.
+ */
+@Component
+public class QueryStatistics {
+
+    private static final Logger slowQueryLog = LoggerFactory.getLogger("queryx.slow-query");
+
+    private static final int MAX_STATEMENT_LENGTH = 2000;
+
+    @Value("${query.stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query.stats.max-fingerprints:5000}")
+    private long maxFingerprints;
+
+    /** Statements taking at least this long go to the slow-query log; 0 or less disables it. */
+    @Value("${query.stats.slow-threshold-ms:1000}")
+    private long slowThresholdMs;
+
+    @Value("${query.stats.slow-log-size:200}")
+    private int slowLogSize;
+
+    private Cache<String, Stats> fingerprints;
+
+    private final Deque<Map<String, Object>> slowQueries = new ArrayDeque<>();
+
+    /**
+     * Counters of one fingerprint. Updated concurrently without locking.
+     */
+    private static final class Stats {
+
+        private final String id;
+        private final String query;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private volatile long lastSeen;
+
+        private Stats(String id, String query) {
+            this.id = id;
+            this.query = query;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        fingerprints = Caffeine.newBuilder()
+            .maximumSize(maxFingerprints)
+            .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records one execution of {@code sql}.
+     *
+     * @param rc the response code the execution ended with; anything but "200" counts as an error
+     */
+    public void record(String sql, String queryType, long elapsedNanos, long rowCount, String rc) {
+        if (!enabled || sql == null) {
+            return;
+        }
+        String normalized = QueryFingerprint.normalize(sql);
+        String id = QueryFingerprint.id(normalized);
+        Stats stats = fingerprints.get(id, key -> new Stats(key, normalized));
+        stats.calls.increment();
+        stats.totalNanos.add(elapsedNanos);
+        stats.maxNanos.accumulate(elapsedNanos);
+        stats.rows.add(rowCount);
+        if (!"200".equals(rc)) {
+            stats.errors.increment();
+        }
+        stats.lastSeen = System.currentTimeMillis();
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (slowThresholdMs > 0 && elapsedMs >= slowThresholdMs) {
+            recordSlow(id, sql, queryType, elapsedMs, rowCount, rc);
+        }
+    }
+
+    /**
+     * The {@code limit} fingerprints with the highest {@code orderBy}: "total_time" (default),
+     * "mean_time", "max_time", "calls", "rows" or "errors".
+     */
+    public List<Map<String, Object>> top(int limit, String orderBy) {
+        Comparator<Stats> order = switch (orderBy == null ? "total_time" : orderBy) {
+            case "total_time" -> Comparator.comparingLong(stats -> stats.totalNanos.sum());
+            case "mean_time" -> Comparator.comparingDouble(QueryStatistics::meanNanos);
+            case "max_time" -> Comparator.comparingLong(stats -> stats.maxNanos.get());
+            case "calls" -> Comparator.comparingLong(stats -> stats.calls.sum());
+            case "rows" -> Comparator.comparingLong(stats -> stats.rows.sum());
+            case "errors" -> Comparator.comparingLong(stats -> stats.errors.sum());
+            default -> throw new IllegalArgumentException("Unsupported orderBy: " + orderBy
+                + ". Use total_time, mean_time, max_time, calls, rows or errors.");
+        };
+        return fingerprints.asMap().values().stream()
+            .sorted(order.reversed())
+            .limit(Math.max(0, limit))
+            .map(QueryStatistics::toMap)
+            .toList();
+    }
+
+    /**
+     * The most recent slow statements, newest first.
+     */
+    public List<Map<String, Object>> slowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void reset() {
+        fingerprints.invalidateAll();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    private void recordSlow(String id, String sql, String queryType, long elapsedMs, long rowCount, String rc) {
+        String statement = sql.length() > MAX_STATEMENT_LENGTH ? sql.substring(0, MAX_STATEMENT_LENGTH) + "..." : sql;
+        slowQueryLog.warn("Slow query {} ms (type={}, rc={}, rows={}, fingerprint={}): {}",
+            elapsedMs, queryType, rc, rowCount, id, statement);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("timestamp", Instant.now().toString());
+        entry.put("fingerprintId", id);
+        entry.put("queryType", queryType);
+        entry.put("durationMs", elapsedMs);
+        entry.put("rows", rowCount);
+        entry.put("rc", rc);
+        entry.put("statement", statement);
+        synchronized (slowQueries) {
+            slowQueries.addFirst(entry);
+            while (slowQueries.size() > slowLogSize) {
+                slowQueries.removeLast();
+            }
+        }
+    }
+
+    private static double meanNanos(Stats stats) {
+        long calls = stats.calls.sum();
+        return calls == 0 ? 0 : (double) stats.totalNanos.sum() / calls;
+    }
+
+    private static Map<String, Object> toMap(Stats stats) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("fingerprintId", stats.id);
+        entry.put("query", stats.query);
+        entry.put("calls", stats.calls.sum());
+        entry.put("totalTimeMs", stats.totalNanos.sum() / 1e6);
+        entry.put("meanTimeMs", meanNanos(stats) / 1e6);
+        entry.put("maxTimeMs", stats.maxNanos.get() / 1e6);
+        entry.put("rows", stats.rows.sum());
+        entry.put("errors", stats.errors.sum());
+        entry.put("lastSeen", Instant.ofEpochMilli(stats.lastSeen).toString());
+        return entry;
+    }
+}
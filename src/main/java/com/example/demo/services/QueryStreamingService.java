@@ -0,0 +1,281 @@
+package com.example.demo.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams query results to the client row by row instead of building the whole result in memory.
+ * Rows are read through a server-side cursor (read-only transaction + fetch size) and written as
+ * soon as they arrive, so memory stays flat regardless of the number of rows returned.
+ */
+@Service
+public class QueryStreamingService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @Autowired
+    private ReadReplicaRouting readReplicaRouting;
+
+    /**
+     * Number of rows fetched per cursor round-trip; also the flush interval of the output.
+     */
+    @Value("${query.stream.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Output formats supported by the streaming endpoints.
+     */
+    public enum StreamFormat {
+        /** One JSON object per row, separated by newlines. */
+        NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+        /** A single QueryResponse-shaped JSON document whose "data" array is written incrementally. */
+        JSON(MediaType.APPLICATION_JSON);
+
+        private final MediaType mediaType;
+
+        StreamFormat(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static StreamFormat from(String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return StreamFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported stream format: " + value);
+            }
+        }
+    }
+
+    /**
+     * Executes the query and writes every row to {@code out} as it is read from the cursor.
+     * Errors raised after the first byte has been sent cannot change the HTTP status anymore,
+     * so they are reported in-band: as a trailing {"rc","message"} line for NDJSON, or in the
+     * rc/message fields of the JSON document.
+     *
+     * <p>{@code query} must have been registered with the {@link QueryRegistry}; it is finished
+     * here. If the client disconnects mid-stream the statement is cancelled, so the backend stops
+     * producing rows and the connection goes back to the pool.
+     *
+     * @return the rc reported at the end of the stream, "200" if every row was sent
+     */
+    public String streamQuery(String sql, String queryType, StreamFormat format, OutputStream out,
+            QueryRegistry.RunningQuery query) throws IOException {
+        try {
+            return streamQueryRows(sql, queryType, format, out, query);
+        } finally {
+            queryRegistry.finish(query);
+        }
+    }
+
+    private String streamQueryRows(String sql, String queryType, StreamFormat format, OutputStream out,
+            QueryRegistry.RunningQuery query) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        Timer.Sample sample = queryMetrics.start();
+        JsonGenerator generator = objectMapper.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // NDJSON rows are separated by explicit newlines, not Jackson's default root separator.
+        generator.setRootValueSeparator(null);
+
+        if (format == StreamFormat.JSON) {
+            generator.writeStartObject();
+            generator.writeStringField("executedQuery", sql);
+            generator.writeStringField("queryType", queryType);
+            generator.writeStringField("queryId", query.getId());
+        }
+
+        RowStreamWriter rowWriter = new RowStreamWriter(generator, format, query);
+        String rc = "200";
+        String error = null;
+        try {
+            executeWithCursor(sql, fetchSize, rowWriter, query);
+        } catch (UncheckedIOException e) {
+            queryMetrics.query(sample, query.getQueryType(), "499", rowWriter.rowCount);
+            queryStatistics.record(sql, query.getQueryType(), System.nanoTime() - startNanos, rowWriter.rowCount, "499");
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            if (rowWriter.clientError != null) {
+                // The rollback after a client abort can fail as well and hide the original error.
+                queryMetrics.query(sample, query.getQueryType(), "499", rowWriter.rowCount);
+                queryStatistics.record(sql, query.getQueryType(), System.nanoTime() - startNanos, rowWriter.rowCount, "499");
+                throw rowWriter.clientError;
+            }
+            rc = "500";
+            error = "Error executing query: " + e.getMessage();
+            if (e instanceof DataAccessException dataAccessException) {
+                error = "Error executing query: " + dataAccessException.getMostSpecificCause().getMessage();
+                if (query.wasStoppedBy(e)) {
+                    rc = query.stoppedRc();
+                    error = query.stoppedMessage();
+                }
+            }
+        }
+
+        queryMetrics.query(sample, query.getQueryType(), rc, rowWriter.rowCount);
+        queryStatistics.record(sql, query.getQueryType(), System.nanoTime() - startNanos, rowWriter.rowCount, rc);
+
+        // A failure in the middle of the result leaves the row object and/or "data" array open.
+        boolean rowInterrupted = closeNestedContexts(generator, format == StreamFormat.JSON ? 1 : 0);
+
+        if (format == StreamFormat.JSON) {
+            generator.writeNumberField("rowsAffected", rowWriter.rowCount);
+            generator.writeNumberField("executionTimeMs", System.currentTimeMillis() - startTime);
+            generator.writeStringField("rc", rc);
+            generator.writeStringField("message", error == null ? "Query streamed successfully." : error);
+            generator.writeEndObject();
+        } else if (error != null) {
+            if (rowInterrupted) {
+                generator.writeRaw('\n');
+            }
+            generator.writeStartObject();
+            generator.writeStringField("rc", rc);
+            generator.writeStringField("message", error);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        return rc;
+    }
+
+    private boolean closeNestedContexts(JsonGenerator generator, int depth) throws IOException {
+        boolean closed = false;
+        while (generator.getOutputContext().getNestingDepth() > depth) {
+            if (generator.getOutputContext().inArray()) {
+                generator.writeEndArray();
+            } else {
+                generator.writeEndObject();
+            }
+            closed = true;
+        }
+        return closed;
+    }
+
+    /**
+     * Runs {@code sql} and hands its result set to {@code extractor} while rows are still being
+     * fetched, {@code fetchSize} rows per round-trip. Also used by {@link QueryExportService}.
+     */
+    <T> T executeWithCursor(String sql, int fetchSize, ResultSetExtractor<T> extractor,
+            QueryRegistry.RunningQuery query) {
+        // PostgreSQL only uses a server-side cursor when auto-commit is off and a fetch size is set.
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return readReplicaRouting.forStatement(sql, () -> transactionTemplate.execute(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            query.attach(ps, sql);
+            return ps;
+        }, extractor)));
+    }
+
+    /**
+     * Writes each row of the result set through the JSON generator, flushing after the first row
+     * (fast time-to-first-byte) and then once per fetched batch.
+     */
+    private class RowStreamWriter implements ResultSetExtractor<Long> {
+
+        private final JsonGenerator generator;
+        private final StreamFormat format;
+        private final QueryRegistry.RunningQuery query;
+        private long rowCount;
+        private IOException clientError;
+
+        RowStreamWriter(JsonGenerator generator, StreamFormat format, QueryRegistry.RunningQuery query) {
+            this.generator = generator;
+            this.format = format;
+            this.query = query;
+        }
+
+        @Override
+        public Long extractData(ResultSet rs) throws SQLException {
+            try {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                List<String> columns = new ArrayList<>(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    columns.add(JdbcUtils.lookupColumnName(metaData, i));
+                }
+
+                if (format == StreamFormat.JSON) {
+                    generator.writeArrayFieldStart("columns");
+                    for (String column : columns) {
+                        generator.writeString(column);
+                    }
+                    generator.writeEndArray();
+                    generator.writeArrayFieldStart("data");
+                }
+
+                while (rs.next()) {
+                    generator.writeStartObject();
+                    for (int i = 1; i <= columnCount; i++) {
+                        Object value = JdbcUtils.getResultSetValue(rs, i);
+                        generator.writeFieldName(columns.get(i - 1));
+                        generator.writeObject(value);
+                    }
+                    generator.writeEndObject();
+                    if (format == StreamFormat.NDJSON) {
+                        generator.writeRaw('\n');
+                    }
+                    rowCount++;
+                    if (rowCount == 1 || rowCount % fetchSize == 0) {
+                        generator.flush();
+                    }
+                }
+
+                if (format == StreamFormat.JSON) {
+                    generator.writeEndArray();
+                }
+                return rowCount;
+            } catch (IOException e) {
+                // The client went away: stop the statement now rather than after the rollback, as
+                // nothing more can be written.
+                clientError = e;
+                query.cancel();
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.services;
+
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Decides which statements may read from a replica. Work wrapped in {@link #onReplica} or, for a
+ * read-only statement, {@link #forStatement} takes its connections from
+ * {@link ReadWriteRoutingDataSource}'s replica pools; everything else uses the primary.
+ *
+ * <p>Read-your-writes: for {@code datasource.replica.sticky-ms} after a write made through the
+ * API (ingest, DDL, or a non-read statement through /query), all reads go to the primary, so a
+ * client reading right after its own write does not see a replica that has not caught up yet.
+ * The API has no notion of sessions, so the window applies to every client.
+ *
+ * <p>Without {@code datasource.replica.enabled} this class does nothing and every connection
+ * comes from the primary pool.
+ */
+@Component
+public class ReadReplicaRouting {
+
+    private static final Pattern READ_STATEMENT = Pattern.compile("^\\(*\\s*(select|with)\\b", Pattern.CASE_INSENSITIVE);
+
+    /** Read statements that still write or lock, and so must run on the primary. */
+    private static final Pattern WRITES = Pattern.compile(
+        "\\b(insert|update|delete|merge|into|for\\s+(update|share|no\\s+key\\s+update|key\\s+share)"
+            + "|nextval|setval|pg_advisory_lock|pg_advisory_xact_lock|pg_notify)\\b",
+        Pattern.CASE_INSENSITIVE);
+
+    private static final ThreadLocal<Boolean> replicaRequested = new ThreadLocal<>();
+
+    @Value("${datasource.replica.enabled:false}")
+    private boolean enabled;
+
+    /** Reads within this many milliseconds of a write go to the primary; 0 turns stickiness off. */
+    @Value("${datasource.replica.sticky-ms:5000}")
+    private long stickyMs;
+
+    private volatile long lastWriteNanos;
+
+    private volatile boolean written;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether {@code sql} is a plain SELECT (or WITH ... SELECT) that can run on a replica.
+     * Functions with side effects are not detected; on a hot standby they fail instead of writing.
+     */
+    public static boolean isReadOnly(String sql) {
+        return sql != null && READ_STATEMENT.matcher(sql.trim()).find() && !WRITES.matcher(sql).find();
+    }
+
+    /**
+     * Runs {@code action} on a replica if {@code sql} is read-only, otherwise on the primary,
+     * starting the read-your-writes window once it has run.
+     */
+    public <T> T forStatement(String sql, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        if (isReadOnly(sql)) {
+            return onReplica(action);
+        }
+        try {
+            return action.get();
+        } finally {
+            markWrite();
+        }
+    }
+
+    /**
+     * Runs {@code action}, which must only read, with connections from a replica when one is
+     * healthy and no write happened within the sticky window.
+     */
+    public <T> T onReplica(Supplier<T> action) {
+        // Inside onPrimary every connection comes from the primary
+        if (!enabled || Boolean.FALSE.equals(replicaRequested.get())) {
+            return action.get();
+        }
+        return withReplicaRequested(Boolean.TRUE, action);
+    }
+
+    /**
+     * Runs {@code action} with all connections from the primary, including reads inside it that
+     * ask for a replica. Used when reads and writes share one connection or transaction.
+     */
+    public <T> T onPrimary(Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        return withReplicaRequested(Boolean.FALSE, action);
+    }
+
+    private <T> T withReplicaRequested(Boolean requested, Supplier<T> action) {
+        Boolean previous = replicaRequested.get();
+        replicaRequested.set(requested);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                replicaRequested.remove();
+            } else {
+                replicaRequested.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Whether a connection requested on the current thread may come from a replica.
+     */
+    boolean replicaAllowed() {
+        if (!Boolean.TRUE.equals(replicaRequested.get())) {
+            return false;
+        }
+        return !written || stickyMs <= 0 || System.nanoTime() - lastWriteNanos > stickyMs * 1_000_000;
+    }
+
+    public void markWrite() {
+        lastWriteNanos = System.nanoTime();
+        written = true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTableDataChanged(TableDataChangedEvent event) {
+        markWrite();
+    }
+
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        markWrite();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.demo.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * The application's DataSource when read replicas are enabled: a Hikari pool on the primary
+ * (configured by spring.datasource.*) plus one pool per URL in {@code datasource.replica.urls}.
+ * Connections requested under {@link ReadReplicaRouting#onReplica} come from the healthy replicas
+ * in turn; all others, and all reads when no replica is healthy, come from the primary.
+ *
+ * <p>Every {@code health-check-ms} each replica runs a probe that also reports its replay lag. A
+ * replica is taken out of rotation when the probe fails, when its lag exceeds
+ * {@code max-lag-seconds}, or as soon as a connection cannot be obtained from it, and is put back
+ * by the next successful probe.
+ *
+ * <p>Replica pools use the spring.datasource.hikari settings of the primary, with their own
+ * maximum size and a short connection timeout so that a replica going down costs at most that
+ * long before the read falls back to the primary.
+ */
+@Component
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    /** Seconds since the last replayed transaction; 0 when caught up or not a standby. */
+    private static final String LAG_SQL = """
+        SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                    ELSE COALESCE(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0) END""";
+
+    @Autowired
+    private ReadReplicaRouting routing;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** Comma-separated JDBC URLs of the replicas. */
+    @Value("${datasource.replica.urls:}")
+    private List<String> replicaUrls;
+
+    /** Replica credentials; the primary's when empty. */
+    @Value("${datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${datasource.replica.password:}")
+    private String replicaPassword;
+
+    @Value("${datasource.replica.maximum-pool-size:20}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replica.connection-timeout-ms:2000}")
+    private long replicaConnectionTimeoutMs;
+
+    @Value("${datasource.replica.health-check-ms:5000}")
+    private long healthCheckMs;
+
+    /** Replicas lagging further behind are taken out of rotation; 0 ignores lag. */
+    @Value("${datasource.replica.max-lag-seconds:0}")
+    private double maxLagSeconds;
+
+    private HikariDataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private Counter primaryConnections;
+
+    private Counter replicaConnections;
+
+    private ScheduledExecutorService healthChecker;
+
+    /**
+     * One replica pool and whether it is currently in rotation.
+     */
+    private static final class Replica {
+
+        private final String name;
+        private final HikariDataSource pool;
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+
+        private Replica(String name, HikariDataSource pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        primary = createPool("primary", dataSourceProperties.determineUrl(),
+            dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource pool = createPool(name, url.trim(),
+                replicaUsername.isEmpty() ? dataSourceProperties.determineUsername() : replicaUsername,
+                replicaUsername.isEmpty() ? dataSourceProperties.determinePassword() : replicaPassword);
+            pool.setMaximumPoolSize(replicaPoolSize);
+            pool.setMinimumIdle(Math.min(pool.getMinimumIdle(), replicaPoolSize));
+            pool.setConnectionTimeout(replicaConnectionTimeoutMs);
+            pool.setReadOnly(true);
+            Replica replica = new Replica(name, pool);
+            replicas.add(replica);
+            Gauge.builder("queryx.datasource.replica.up", replica, r -> r.healthy ? 1 : 0)
+                .description("Whether the replica is in the read rotation")
+                .tag("pool", name)
+                .register(meterRegistry);
+            Gauge.builder("queryx.datasource.replica.lag", replica, r -> r.lagSeconds)
+                .description("Replay lag of the replica at the last health check")
+                .baseUnit("seconds")
+                .tag("pool", name)
+                .register(meterRegistry);
+        }
+
+        primaryConnections = connectionCounter("primary");
+        replicaConnections = connectionCounter("replica");
+        log.info("Routing read-only queries to {} replica(s)", replicas.size());
+
+        if (!replicas.isEmpty() && healthCheckMs > 0) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, healthCheckMs, healthCheckMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> replica.pool.close());
+        primary.close();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (routing.replicaAllowed()) {
+            Replica replica = nextHealthyReplica();
+            if (replica != null) {
+                try {
+                    Connection connection = replica.pool.getConnection();
+                    replicaConnections.increment();
+                    return connection;
+                } catch (SQLException | RuntimeException e) {
+                    markDown(replica, e.getMessage());
+                }
+            }
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Connections with explicit credentials are not supported by " + getClass().getSimpleName());
+    }
+
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(replicaConnectionTimeoutMs)));
+                try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    replica.lagSeconds = rs.getDouble(1);
+                }
+                if (maxLagSeconds > 0 && replica.lagSeconds > maxLagSeconds) {
+                    markDown(replica, String.format("replay lag %.1f s exceeds %.1f s", replica.lagSeconds, maxLagSeconds));
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Replica {} is back in the read rotation", replica.name);
+                }
+            } catch (SQLException | RuntimeException e) {
+                markDown(replica, e.getMessage());
+            }
+        }
+    }
+
+    private void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Replica {} taken out of the read rotation: {}", replica.name, reason);
+        }
+    }
+
+    private HikariDataSource createPool(String name, String url, String username, String password) {
+        HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .url(url)
+            .username(username)
+            .password(password)
+            .build();
+        pool.setPoolName(name);
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+
+    private Counter connectionCounter(String target) {
+        return Counter.builder("queryx.datasource.connections")
+            .description("Connections handed out, by pool they were taken from")
+            .tag("target", target)
+            .register(meterRegistry);
+    }
+}
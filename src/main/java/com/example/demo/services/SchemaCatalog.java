@@ -0,0 +1,96 @@
+package com.example.demo.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory cache of table schemas, so repeated schema lookups (every AI query builds its prompt
+ * from them) do not go back to the database catalog each time.
+ *
+ * <p>Entries are bounded in number and expire after a TTL. DDL issued through
+ * {@link SchemaService} invalidates the affected table explicitly; DDL issued outside the
+ * application is picked up by {@link SchemaChangeListener} when LISTEN/NOTIFY is enabled,
+ * or at the latest when the TTL runs out.
+ */
+@Component
+public class SchemaCatalog {
+
+    private static final String TABLE_LIST_KEY = "tables";
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${schema.catalog.max-size:1000}")
+    private long maxSize;
+
+    @Value("${schema.catalog.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, Map<String, Map<String, Object>>> tableSchemas;
+
+    private Cache<String, List<String>> tableNames;
+
+    @PostConstruct
+    void init() {
+        tableSchemas = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .build();
+        tableNames = Caffeine.newBuilder()
+            .maximumSize(1)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .build();
+    }
+
+    /**
+     * Returns the cached schemas of the given tables, loading all missing ones with a single
+     * call to {@code bulkLoader}.
+     */
+    public Map<String, Map<String, Map<String, Object>>> getTableSchemas(Collection<String> tableNames,
+            Function<Set<? extends String>, Map<String, Map<String, Map<String, Object>>>> bulkLoader) {
+        return tableSchemas.getAll(tableNames, bulkLoader);
+    }
+
+    public List<String> getTableNames(Supplier<List<String>> loader) {
+        return tableNames.get(TABLE_LIST_KEY, key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Drops the cached schema of one table (and the table list, since the table may have been
+     * created or dropped). Entries are matched on the table part of the name, so both
+     * {@code users} and {@code public.users} are dropped for either spelling.
+     */
+    public void invalidate(String tableName) {
+        if (tableName == null) {
+            invalidateAll();
+            return;
+        }
+        String bareName = tableName.substring(tableName.lastIndexOf('.') + 1);
+        String suffix = "." + bareName;
+        tableSchemas.asMap().keySet().removeIf(key -> key.equals(bareName) || key.endsWith(suffix));
+        tableNames.invalidateAll();
+        eventPublisher.publishEvent(new SchemaChangedEvent(tableName));
+    }
+
+    public void invalidateAll() {
+        tableSchemas.invalidateAll();
+        tableNames.invalidateAll();
+        eventPublisher.publishEvent(new SchemaChangedEvent(null));
+    }
+
+    public long size() {
+        return tableSchemas.estimatedSize();
+    }
+}
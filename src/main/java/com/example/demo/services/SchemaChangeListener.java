@@ -0,0 +1,220 @@
+package com.example.demo.services;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@link SchemaCatalog} in sync with DDL executed outside this application.
+ *
+ * <p>A PostgreSQL event trigger publishes every DDL command on the {@value #CHANNEL} channel;
+ * this component LISTENs on a dedicated connection and invalidates the affected tables. The
+ * connection is opened directly (not from the Hikari pool) because it is held for the lifetime
+ * of the application. LISTEN does not work through a transaction-mode pooler such as PgBouncer,
+ * so {@code schema.catalog.listen.url} can point at the direct database endpoint.
+ */
+@Component
+@ConditionalOnProperty(name = "schema.catalog.listen.enabled", havingValue = "true")
+public class SchemaChangeListener {
+
+    static final String CHANNEL = "queryx_schema_changed";
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaChangeListener.class);
+
+    private static final String TRIGGER_FUNCTION_SQL = """
+        CREATE OR REPLACE FUNCTION queryx_notify_schema_change() RETURNS event_trigger
+        LANGUAGE plpgsql AS $$
+        DECLARE
+            obj record;
+        BEGIN
+            IF TG_EVENT = 'sql_drop' THEN
+                FOR obj IN SELECT object_type, object_identity FROM pg_event_trigger_dropped_objects() LOOP
+                    PERFORM pg_notify('queryx_schema_changed', obj.object_type || '|' || coalesce(obj.object_identity, ''));
+                END LOOP;
+            ELSE
+                FOR obj IN SELECT object_type, object_identity FROM pg_event_trigger_ddl_commands() LOOP
+                    PERFORM pg_notify('queryx_schema_changed', obj.object_type || '|' || coalesce(obj.object_identity, ''));
+                END LOOP;
+            END IF;
+        END;
+        $$""";
+
+    private static final String EVENT_TRIGGERS_SQL = """
+        DO $$
+        BEGIN
+            IF NOT EXISTS (SELECT 1 FROM pg_event_trigger WHERE evtname = 'queryx_schema_change_end') THEN
+                CREATE EVENT TRIGGER queryx_schema_change_end ON ddl_command_end
+                    EXECUTE FUNCTION queryx_notify_schema_change();
+            END IF;
+            IF NOT EXISTS (SELECT 1 FROM pg_event_trigger WHERE evtname = 'queryx_schema_change_drop') THEN
+                CREATE EVENT TRIGGER queryx_schema_change_drop ON sql_drop
+                    EXECUTE FUNCTION queryx_notify_schema_change();
+            END IF;
+        END
+        $$""";
+
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    @Autowired
+    private SchemaCatalog schemaCatalog;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    /**
+     * JDBC URL used for LISTEN; defaults to spring.datasource.url.
+     */
+    @Value("${schema.catalog.listen.url:}")
+    private String listenUrl;
+
+    /**
+     * Creates the event trigger on startup. Event triggers require superuser (or database owner
+     * on managed services), so this is off by default and can be run once by an administrator.
+     */
+    @Value("${schema.catalog.listen.install-trigger:false}")
+    private boolean installTrigger;
+
+    @Value("${schema.catalog.listen.poll-timeout-ms:10000}")
+    private int pollTimeoutMs;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        worker = new Thread(this::listen, "schema-change-listener");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void listen() {
+        long backoffMs = 1000;
+        while (running) {
+            try (Connection connection = openConnection()) {
+                if (installTrigger) {
+                    installTrigger(connection);
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Anything that happened while we were not listening is unknown.
+                schemaCatalog.invalidateAll();
+                backoffMs = 1000;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Schema change listener disconnected, retrying in {} ms: {}", backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Payload format is {@code object_type|object_identity}, e.g. {@code table|public.users} or
+     * {@code table column|public.users.email}.
+     */
+    void onNotification(String payload) {
+        int separator = payload == null ? -1 : payload.indexOf('|');
+        if (separator < 0) {
+            schemaCatalog.invalidateAll();
+            return;
+        }
+        String objectType = payload.substring(0, separator);
+        String identity = payload.substring(separator + 1);
+        String tableName = objectType.startsWith("table") || objectType.endsWith("view")
+            ? parseTableName(identity) : null;
+
+        if (tableName == null) {
+            // Indexes, types, functions, ... may affect any table; be conservative.
+            schemaCatalog.invalidateAll();
+        } else {
+            log.debug("Invalidating cached schema of '{}' after {} DDL", tableName, objectType);
+            schemaCatalog.invalidate(tableName);
+        }
+    }
+
+    /**
+     * Extracts the table part of a qualified identity such as {@code public.users},
+     * {@code "My Schema"."My Table"} or {@code public.users.email}.
+     */
+    static String parseTableName(String identity) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < identity.length(); i++) {
+            char c = identity.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < identity.length() && identity.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == '.' && !quoted) {
+                parts.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(current.toString());
+        return parts.size() >= 2 && !parts.get(1).isEmpty() ? parts.get(1) : null;
+    }
+
+    private Connection openConnection() throws SQLException {
+        String url = listenUrl == null || listenUrl.isBlank() ? dataSourceProperties.determineUrl() : listenUrl;
+        return DriverManager.getConnection(url, dataSourceProperties.determineUsername(),
+            dataSourceProperties.determinePassword());
+    }
+
+    private void installTrigger(Connection connection) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(TRIGGER_FUNCTION_SQL);
+            statement.execute(EVENT_TRIGGERS_SQL);
+        } catch (SQLException e) {
+            log.warn("Could not install schema change event trigger: {}", e.getMessage());
+        }
+    }
+}
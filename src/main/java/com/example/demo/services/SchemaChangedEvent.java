@@ -0,0 +1,25 @@
+package com.example.demo.services;
+
+/**
+ * Published by {@link SchemaCatalog} whenever cached schema information is invalidated, so that
+ * caches derived from table schemas can drop their affected entries.
+ *
+ * @param tableName the table whose schema changed, or {@code null} if any table may have changed
+ */
+public record SchemaChangedEvent(String tableName) {
+
+    public boolean affectsAllTables() {
+        return tableName == null;
+    }
+
+    /**
+     * Whether the event concerns {@code name}, comparing the table part of qualified names.
+     */
+    public boolean affects(String name) {
+        return affectsAllTables() || bareName(tableName).equals(bareName(name));
+    }
+
+    private static String bareName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
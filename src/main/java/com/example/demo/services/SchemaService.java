@@ -2,7 +2,11 @@ package com.example.demo.services;
 
 import com.example.demo.dto.CreateTableRequest;
 import com.example.demo.dto.ResponseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
@@ -16,24 +20,194 @@ public class SchemaService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private SchemaCatalog schemaCatalog;
+
+    @Autowired
+    private ReadReplicaRouting readReplicaRouting;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** Concurrent lookups that miss the cache for the same tables share one catalog query. */
+    @Value("${schema.catalog.coalesce:true}")
+    private boolean coalesce;
+
+    private SingleFlight<Set<String>, Map<String, Map<String, Map<String, Object>>>> schemaLoads;
+
+    /**
+     * All columns of the selected relations in one pass over pg_catalog. The data_type,
+     * character_maximum_length and is_nullable columns mirror information_schema.columns.
+     */
+    private static final String BULK_COLUMNS_SQL = """
+        SELECT n.nspname AS table_schema, c.relname AS table_name, a.attname AS column_name,
+               a.attnum AS ordinal_position,
+               CASE WHEN bt.typelem <> 0 AND bt.typlen = -1 THEN 'ARRAY'
+                    WHEN bn.nspname = 'pg_catalog' THEN format_type(bt.oid, NULL)
+                    ELSE 'USER-DEFINED' END AS data_type,
+               CASE WHEN bt.oid IN (1042, 1043)
+                    THEN NULLIF(CASE WHEN t.typtype = 'd' THEN t.typtypmod ELSE a.atttypmod END, -1) - 4
+               END AS character_maximum_length,
+               CASE WHEN a.attnotnull THEN 'NO' ELSE 'YES' END AS is_nullable,
+               COALESCE(a.attnum = ANY (pk.indkey::int2[]), false) AS is_primary_key
+        FROM pg_catalog.pg_attribute a
+        JOIN pg_catalog.pg_class c ON c.oid = a.attrelid
+        JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace
+        JOIN pg_catalog.pg_type t ON t.oid = a.atttypid
+        JOIN pg_catalog.pg_type bt ON bt.oid = CASE WHEN t.typtype = 'd' THEN t.typbasetype ELSE t.oid END
+        JOIN pg_catalog.pg_namespace bn ON bn.oid = bt.typnamespace
+        LEFT JOIN pg_catalog.pg_index pk ON pk.indrelid = c.oid AND pk.indisprimary
+        WHERE a.attnum > 0 AND NOT a.attisdropped
+          AND c.relkind = ANY (?::"char"[])
+          AND c.relname = ANY (?)
+          AND n.nspname NOT IN ('pg_catalog', 'information_schema') AND n.nspname NOT LIKE 'pg_toast%'
+        ORDER BY n.nspname, c.relname, a.attnum""";
+
+    private static final String BULK_INDEXES_SQL = """
+        SELECT n.nspname AS table_schema, c.relname AS table_name, ic.relname AS index_name,
+               i.indisunique AS is_unique, i.indisprimary AS is_primary,
+               ARRAY(SELECT a.attname FROM unnest(i.indkey::int2[]) WITH ORDINALITY AS k(attnum, ord)
+                     JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid AND a.attnum = k.attnum
+                     ORDER BY k.ord) AS columns,
+               pg_catalog.pg_get_indexdef(i.indexrelid) AS definition
+        FROM pg_catalog.pg_index i
+        JOIN pg_catalog.pg_class c ON c.oid = i.indrelid
+        JOIN pg_catalog.pg_class ic ON ic.oid = i.indexrelid
+        JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace
+        WHERE c.relkind = ANY (?::"char"[])
+          AND c.relname = ANY (?)
+          AND n.nspname NOT IN ('pg_catalog', 'information_schema') AND n.nspname NOT LIKE 'pg_toast%'
+        ORDER BY n.nspname, c.relname, ic.relname""";
+
+    /** Relation kinds that can be looked up by name: tables, views, materialized and foreign tables. */
+    private static final String[] RELATION_KINDS = {"r", "p", "v", "m", "f"};
+
+    @PostConstruct
+    void init() {
+        schemaLoads = new SingleFlight<>("schema_load", coalesce, meterRegistry);
+    }
+
+    /**
+     * Lists user tables. Tables in the public schema are returned by name, tables in other
+     * schemas as {@code schema.table}, so same-named tables in different schemas stay distinct.
+     */
     public List<String> listTables() {
-        return jdbcTemplate.queryForList("SELECT tablename FROM pg_catalog.pg_tables WHERE schemaname != 'pg_catalog' AND schemaname != 'information_schema'", String.class);
+        return schemaCatalog.getTableNames(() -> readReplicaRouting.onReplica(() -> jdbcTemplate.queryForList(
+            "SELECT CASE WHEN schemaname = 'public' THEN tablename ELSE schemaname || '.' || tablename END "
+                + "FROM pg_catalog.pg_tables WHERE schemaname != 'pg_catalog' AND schemaname != 'information_schema' "
+                + "ORDER BY schemaname, tablename", String.class)));
     }
 
     public Map<String, Map<String, Map<String, Object>>> getAllTableSchemas() {
-        List<String> tables = listTables();
-        return tables.stream().collect(Collectors.toMap(table -> table, this::getTableSchema));
+        return getListOfTableSchemas(listTables());
     }
 
+    /**
+     * Returns the schema of a table. The name may be qualified ({@code schema.table}); an
+     * unqualified name resolves to the public schema first, then to the first schema that has it.
+     */
     public Map<String, Map<String, Object>> getTableSchema(String tableName) {
-        String sql = "SELECT column_name, data_type, character_maximum_length, is_nullable FROM information_schema.columns WHERE table_name = ?";
-        List<Map<String, Object>> columns = jdbcTemplate.queryForList(sql, tableName);
-
-        return Map.of("columns", columns.stream().collect(Collectors.toMap(col -> (String) col.get("column_name"), col -> col)));
+        return getListOfTableSchemas(List.of(tableName)).get(tableName);
     }
 
+    /**
+     * Returns the schemas of the given tables keyed by the names as passed in. Cached tables are
+     * served from {@link SchemaCatalog}; all others are loaded together in one bulk lookup, which
+     * concurrent callers missing the same tables share.
+     */
     public Map<String,Map<String,Map<String,Object>>> getListOfTableSchemas(List<String> tableNames) {
-        return tableNames.stream().collect(Collectors.toMap(table -> table, this::getTableSchema));
+        return schemaCatalog.getTableSchemas(tableNames,
+            names -> schemaLoads.run(Set.copyOf(names),
+                () -> readReplicaRouting.onReplica(() -> loadTableSchemas(names))));
+    }
+
+    /**
+     * Lookups after a schema change load the new definitions instead of joining a load that
+     * started before it.
+     */
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        schemaLoads.forgetAll();
+    }
+
+    /**
+     * Loads columns (with primary key flags) and indexes of the named relations with one query
+     * each and groups them in memory, instead of one information_schema query per table.
+     */
+    private Map<String, Map<String, Map<String, Object>>> loadTableSchemas(Set<? extends String> tableNames) {
+        Set<String> relationNames = new HashSet<>();
+        for (String name : tableNames) {
+            relationNames.add(splitQualifiedName(name)[1]);
+        }
+        Object[] args = {RELATION_KINDS, relationNames.toArray(new String[0])};
+
+        // schema -> table -> {"columns": ..., "indexes": ...}
+        Map<String, Map<String, Map<String, Map<String, Object>>>> bySchema = new HashMap<>();
+
+        jdbcTemplate.query(BULK_COLUMNS_SQL, rs -> {
+            Map<String, Map<String, Object>> table = bySchema
+                .computeIfAbsent(rs.getString("table_schema"), k -> new HashMap<>())
+                .computeIfAbsent(rs.getString("table_name"), k -> newTableSchema());
+            Map<String, Object> column = new LinkedHashMap<>();
+            column.put("column_name", rs.getString("column_name"));
+            column.put("data_type", rs.getString("data_type"));
+            column.put("character_maximum_length", rs.getObject("character_maximum_length"));
+            column.put("is_nullable", rs.getString("is_nullable"));
+            column.put("ordinal_position", rs.getInt("ordinal_position"));
+            column.put("is_primary_key", rs.getBoolean("is_primary_key"));
+            table.get("columns").put(rs.getString("column_name"), column);
+        }, args);
+
+        jdbcTemplate.query(BULK_INDEXES_SQL, rs -> {
+            Map<String, Map<String, Object>> table = bySchema
+                .computeIfAbsent(rs.getString("table_schema"), k -> new HashMap<>())
+                .computeIfAbsent(rs.getString("table_name"), k -> newTableSchema());
+            Map<String, Object> index = new LinkedHashMap<>();
+            index.put("index_name", rs.getString("index_name"));
+            index.put("is_unique", rs.getBoolean("is_unique"));
+            index.put("is_primary", rs.getBoolean("is_primary"));
+            index.put("columns", List.of((String[]) rs.getArray("columns").getArray()));
+            index.put("definition", rs.getString("definition"));
+            table.get("indexes").put(rs.getString("index_name"), index);
+        }, args);
+
+        Map<String, Map<String, Map<String, Object>>> result = new HashMap<>();
+        for (String name : tableNames) {
+            String[] parts = splitQualifiedName(name);
+            Map<String, Map<String, Object>> table;
+            if (parts[0] != null) {
+                table = bySchema.getOrDefault(parts[0], Map.of()).get(parts[1]);
+            } else {
+                table = bySchema.getOrDefault("public", Map.of()).get(parts[1]);
+                if (table == null) {
+                    table = bySchema.keySet().stream().sorted()
+                        .map(schema -> bySchema.get(schema).get(parts[1]))
+                        .filter(Objects::nonNull)
+                        .findFirst().orElse(null);
+                }
+            }
+            // Unknown tables resolve to an empty column map, as before.
+            result.put(name, table != null ? table : newTableSchema());
+        }
+        return result;
+    }
+
+    private static Map<String, Map<String, Object>> newTableSchema() {
+        Map<String, Map<String, Object>> table = new LinkedHashMap<>();
+        table.put("columns", new LinkedHashMap<>());
+        table.put("indexes", new LinkedHashMap<>());
+        return table;
+    }
+
+    /**
+     * Splits {@code schema.table} into its parts; the schema is null for unqualified names.
+     */
+    private static String[] splitQualifiedName(String name) {
+        int dot = name.indexOf('.');
+        if (dot < 0) {
+            return new String[] {null, name};
+        }
+        return new String[] {name.substring(0, dot), name.substring(dot + 1)};
     }
 
     public boolean isTableExists(String tableName) {
@@ -81,6 +255,7 @@ public class SchemaService {
 
             sql.append(")");
             jdbcTemplate.execute(sql.toString());
+            schemaCatalog.invalidate(request.getTableName());
 
             responseDTO.setRc("200");
             responseDTO.setMessage("Table created successfully");
@@ -97,6 +272,7 @@ public class SchemaService {
         try {
             String sql = "DROP TABLE IF EXISTS " + tableName;
             jdbcTemplate.execute(sql);
+            schemaCatalog.invalidate(tableName);
 
             responseDTO.setRc("200");
             responseDTO.setMessage("Table dropped successfully");
@@ -169,6 +345,9 @@ public class SchemaService {
     } catch (DataAccessException e) {
         responseDTO.setRc("500");
         responseDTO.setMessage("Error updating table: " + e.getMostSpecificCause().getMessage());
+    } finally {
+        // Some ALTER commands may have gone through before a failure.
+        schemaCatalog.invalidate(tableName);
     }
     return responseDTO;
 }
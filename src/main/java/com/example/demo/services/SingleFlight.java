@@ -0,0 +1,125 @@
+package com.example.demo.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: while a call for a key is in flight, further callers
+ * with the same key wait for it and receive its result (or its failure) instead of starting
+ * their own.
+ *
+ * <p>Nothing is kept once a call has finished. The key is removed before its result is handed
+ * out, so a caller arriving afterwards always starts a new call, and results are never older
+ * than the request that asked for them.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * The result of a call, and whether it was shared with a call already in flight.
+     */
+    public record Call<V>(CompletableFuture<V> result, boolean shared) {
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+
+    private final Counter sharedCalls;
+
+    /**
+     * @param operation tag of the {@code queryx.singleflight.shared} counter
+     * @param enabled when false every call runs on its own
+     */
+    public SingleFlight(String operation, boolean enabled, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.sharedCalls = Counter.builder("queryx.singleflight.shared")
+            .description("Calls answered by an identical call that was already in flight")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts {@code work} for {@code key} unless a call for it is in flight, in which case that
+     * call's result is returned. Every caller gets its own copy of the future.
+     */
+    public Call<V> submit(K key, Supplier<CompletableFuture<V>> work) {
+        if (!enabled) {
+            return new Call<>(work.get(), false);
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            sharedCalls.increment();
+            return new Call<>(existing.copy(), true);
+        }
+
+        CompletableFuture<V> started;
+        try {
+            started = work.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.completeExceptionally(error);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return new Call<>(flight.copy(), false);
+    }
+
+    /**
+     * Blocking variant of {@link #submit}: runs {@code work} on the calling thread, or waits for
+     * the call in flight for {@code key}. A failure of the shared call is rethrown as is.
+     */
+    public V run(K key, Supplier<V> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            sharedCalls.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            V value = work.get();
+            inFlight.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Lets later callers start new calls instead of joining the ones in flight, e.g. after the
+     * data those calls read has changed. Calls in flight still complete for their callers.
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
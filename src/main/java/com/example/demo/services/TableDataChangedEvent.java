@@ -0,0 +1,10 @@
+package com.example.demo.services;
+
+/**
+ * Published after rows have been written to a table through the API, so caches holding query
+ * results that read from it can drop them.
+ *
+ * @param tableName the table that was written to
+ */
+public record TableDataChangedEvent(String tableName) {
+}
@@ -1,23 +1,74 @@
 package com.example.demo.services;
 
+import com.example.demo.dto.BulkLoadResponse;
 import com.example.demo.dto.InsertData;
+import com.example.demo.dto.InsertResponse;
 import com.example.demo.dto.ResponseDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class TableDataService {
 
   @Autowired private JdbcTemplate jdbcTemplate;
 
-  @Transactional
-  public ResponseDTO insertData(InsertData data) {
-    ResponseDTO responseDTO = new ResponseDTO();
+  @Autowired private ApplicationEventPublisher eventPublisher;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Autowired private QueryMetrics queryMetrics;
+
+  private static final int MAX_CHUNK_SIZE = 100_000;
+
+  /** Rows sent to the database per JDBC batch by the chunked and streaming inserts. */
+  @Value("${tabledata.insert.chunk-size:1000}")
+  private int chunkSize;
+
+  /** Bytes handed to the server per CopyData message. */
+  @Value("${tabledata.copy.buffer-size:65536}")
+  private int copyBufferSize;
+
+  /**
+   * Inserts the rows in chunks of {@code chunkSize} (request value or {@code
+   * tabledata.insert.chunk-size}). With {@code reWriteBatchedInserts} enabled on the data source,
+   * the driver sends each chunk as multi-row INSERT statements.
+   *
+   * <p>By default all chunks share one transaction. With {@code commitPerChunk} each chunk is
+   * committed on its own; failed chunks are rolled back and listed in the response, so the caller
+   * can resend just those rows.
+   */
+  public InsertResponse insertData(InsertData data) {
+    InsertResponse responseDTO = new InsertResponse();
+    Timer.Sample sample = queryMetrics.start();
 
     try {
       // Validate input data
@@ -72,14 +123,14 @@ public class TableDataService {
       }
 
       // Build the SQL statement with proper quoting
-      String tableName = quoteIdentifier(data.getTableName());
-      String columnsPart =
-          columnNames.stream()
-              .map(this::quoteIdentifier)
-              .collect(Collectors.joining(", "));
-      String placeholders = columnNames.stream().map(c -> "?").collect(Collectors.joining(", "));
+      String sql = insertSql(data.getTableName(), columnNames);
 
-      String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, columnsPart, placeholders);
+      int rowsPerChunk = data.getChunkSize() != null ? data.getChunkSize() : chunkSize;
+      if (rowsPerChunk < 1 || rowsPerChunk > MAX_CHUNK_SIZE) {
+        throw new IllegalArgumentException(
+            String.format("chunkSize must be between 1 and %d.", MAX_CHUNK_SIZE));
+      }
+      boolean commitPerChunk = Boolean.TRUE.equals(data.getCommitPerChunk());
 
       // Prepare batch arguments
       List<Object[]> batchArgs = new ArrayList<>();
@@ -88,33 +139,478 @@ public class TableDataService {
         batchArgs.add(values);
       }
 
-      // Execute batch insert
-      int[] updateCounts = jdbcTemplate.batchUpdate(sql, batchArgs);
-      int successCount = 0;
-      for (int count : updateCounts) {
-        if (count > 0) {
-          successCount++;
+      int totalChunks = (batchArgs.size() + rowsPerChunk - 1) / rowsPerChunk;
+      List<InsertResponse.FailedChunk> failedChunks = new ArrayList<>();
+      long rowsInserted;
+      TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+      if (commitPerChunk) {
+        rowsInserted = 0;
+        for (int chunk = 0; chunk < totalChunks; chunk++) {
+          int from = chunk * rowsPerChunk;
+          List<Object[]> chunkArgs =
+              batchArgs.subList(from, Math.min(from + rowsPerChunk, batchArgs.size()));
+          try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, chunkArgs));
+            rowsInserted += chunkArgs.size();
+          } catch (DataAccessException e) {
+            failedChunks.add(
+                new InsertResponse.FailedChunk(
+                    chunk, from, chunkArgs.size(), e.getMostSpecificCause().getMessage()));
+          }
+        }
+      } else {
+        try {
+          rowsInserted =
+              transactionTemplate.execute(
+                  status -> {
+                    for (int chunk = 0; chunk < totalChunks; chunk++) {
+                      int from = chunk * rowsPerChunk;
+                      try {
+                        jdbcTemplate.batchUpdate(
+                            sql, batchArgs.subList(from, Math.min(from + rowsPerChunk, batchArgs.size())));
+                      } catch (DataAccessException e) {
+                        failedChunks.add(
+                            new InsertResponse.FailedChunk(
+                                chunk,
+                                from,
+                                Math.min(rowsPerChunk, batchArgs.size() - from),
+                                e.getMostSpecificCause().getMessage()));
+                        throw e;
+                      }
+                    }
+                    return (long) batchArgs.size();
+                  });
+        } catch (DataAccessException e) {
+          rowsInserted = 0;
         }
       }
 
+      if (rowsInserted > 0) {
+        // Cached query results for this table are dropped once the rows are committed
+        eventPublisher.publishEvent(new TableDataChangedEvent(data.getTableName()));
+      }
+
+      // Counted from the chunks that committed: with rewritten batches the driver reports
+      // SUCCESS_NO_INFO rather than per-row counts.
+      responseDTO.setRowsInserted(rowsInserted);
+      responseDTO.setChunkSize(rowsPerChunk);
+      responseDTO.setTotalChunks(totalChunks);
+      responseDTO.setFailedChunks(failedChunks);
+      if (failedChunks.isEmpty()) {
+        responseDTO.setRc("200");
+        responseDTO.setMessage(
+            String.format(
+                "%d row(s) inserted successfully into table '%s'.",
+                rowsInserted,
+                data.getTableName()));
+      } else if (rowsInserted > 0) {
+        responseDTO.setRc("207");
+        responseDTO.setMessage(
+            String.format(
+                "%d row(s) inserted into table '%s'; %d of %d chunk(s) failed and were rolled back.",
+                rowsInserted,
+                data.getTableName(),
+                failedChunks.size(),
+                totalChunks));
+      } else {
+        responseDTO.setRc("500");
+        responseDTO.setMessage(
+            String.format(
+                "Error during batch insert: chunk %d failed, no rows were inserted: %s",
+                failedChunks.get(0).getChunkIndex(),
+                failedChunks.get(0).getError()));
+      }
+
+    } catch (IllegalArgumentException e) {
+      responseDTO.setRc("400");
+      responseDTO.setMessage("Validation error: " + e.getMessage());
+    } catch (Exception e) {
+      responseDTO.setRc("500");
+      responseDTO.setMessage("Error during batch insert: " + e.getMessage());
+    }
+
+    queryMetrics.ingest(
+        sample,
+        "insert",
+        responseDTO.getRc(),
+        responseDTO.getRowsInserted() == null ? 0 : responseDTO.getRowsInserted());
+    return responseDTO;
+  }
+
+  /**
+   * Inserts rows from a columnar JSON body while it is being parsed:
+   *
+   * <pre>{"tableName": "users", "columns": ["id", "email"], "rows": [[1, "a@x.io"], [2, "b@x.io"]]}</pre>
+   *
+   * <p>{@code tableName} and {@code columns} must come before {@code rows}. Rows are sent to the
+   * database in batches of {@code tabledata.insert.chunk-size} as they are read, so memory use
+   * depends on the chunk size rather than the payload size. All rows are inserted in one
+   * transaction; any failure rolls the whole request back.
+   *
+   * @param body the request body
+   * @return the number of rows inserted
+   */
+  public ResponseDTO insertDataStream(InputStream body) {
+    ResponseDTO responseDTO = new ResponseDTO();
+    String[] tableName = new String[1];
+    Timer.Sample sample = queryMetrics.start();
+    long inserted = 0;
+
+    try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+      TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+      inserted =
+          transactionTemplate.execute(
+              status -> {
+                try {
+                  return streamRows(parser, tableName);
+                } catch (IOException e) {
+                  throw new IllegalArgumentException("Malformed request body: " + e.getMessage(), e);
+                }
+              });
+
       responseDTO.setRc("200");
       responseDTO.setMessage(
           String.format(
-              "%d row(s) inserted successfully into table '%s'.",
-              successCount,
-              data.getTableName()));
+              "%d row(s) inserted successfully into table '%s'.", inserted, tableName[0]));
 
     } catch (IllegalArgumentException e) {
       responseDTO.setRc("400");
       responseDTO.setMessage("Validation error: " + e.getMessage());
+    } catch (DataAccessException e) {
+      responseDTO.setRc("500");
+      responseDTO.setMessage("Error during batch insert: " + e.getMostSpecificCause().getMessage());
     } catch (Exception e) {
       responseDTO.setRc("500");
       responseDTO.setMessage("Error during batch insert: " + e.getMessage());
     }
 
+    queryMetrics.ingest(sample, "stream", responseDTO.getRc(), inserted);
     return responseDTO;
   }
 
+  private long streamRows(JsonParser parser, String[] tableNameOut) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IllegalArgumentException("Request body must be a JSON object.");
+    }
+
+    String tableName = null;
+    List<String> columnNames = null;
+    long inserted = 0;
+    boolean sawRows = false;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "tableName" -> {
+          tableName = parser.getValueAsString();
+          if (tableName == null || !isValidIdentifier(tableName)) {
+            throw new IllegalArgumentException("Invalid table name. Only alphanumeric characters and underscores are allowed.");
+          }
+          tableNameOut[0] = tableName;
+        }
+        case "columns" -> {
+          if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("columns must be an array of column names.");
+          }
+          columnNames = new ArrayList<>();
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String column = parser.getValueAsString();
+            if (column == null || !isValidIdentifier(column)) {
+              throw new IllegalArgumentException("Invalid column name: " + parser.getText());
+            }
+            columnNames.add(column);
+          }
+          if (columnNames.isEmpty()) {
+            throw new IllegalArgumentException("Columns list cannot be null or empty.");
+          }
+        }
+        case "rows" -> {
+          if (tableName == null || columnNames == null) {
+            throw new IllegalArgumentException("tableName and columns must come before rows.");
+          }
+          if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("rows must be an array of value arrays.");
+          }
+          inserted += insertRows(parser, tableName, columnNames);
+          sawRows = true;
+        }
+        default -> parser.skipChildren();
+      }
+    }
+
+    if (!sawRows || inserted == 0) {
+      throw new IllegalArgumentException("Table name and rows cannot be null or empty.");
+    }
+    eventPublisher.publishEvent(new TableDataChangedEvent(tableName));
+    return inserted;
+  }
+
+  private long insertRows(JsonParser parser, String tableName, List<String> columnNames)
+      throws IOException {
+    String sql = insertSql(tableName, columnNames);
+    List<Object[]> chunk = new ArrayList<>(chunkSize);
+    long rowIndex = 0;
+
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (parser.currentToken() != JsonToken.START_ARRAY) {
+        throw new IllegalArgumentException(String.format("Row %d must be an array of values.", rowIndex));
+      }
+      Object[] values = new Object[columnNames.size()];
+      int column = 0;
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (column == values.length) {
+          throw new IllegalArgumentException(
+              String.format("Row %d has more values than the %d column(s) given.", rowIndex, values.length));
+        }
+        values[column++] = readValue(parser);
+      }
+      if (column != values.length) {
+        throw new IllegalArgumentException(
+            String.format("Row %d has %d value(s) but %d column(s) were given.", rowIndex, column, values.length));
+      }
+      chunk.add(values);
+      rowIndex++;
+
+      if (chunk.size() == chunkSize) {
+        jdbcTemplate.batchUpdate(sql, chunk);
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      jdbcTemplate.batchUpdate(sql, chunk);
+    }
+    return rowIndex;
+  }
+
+  /** Reads the current scalar; nested objects and arrays are passed on as JSON text. */
+  private Object readValue(JsonParser parser) throws IOException {
+    return switch (parser.currentToken()) {
+      case VALUE_NULL -> null;
+      case VALUE_TRUE -> Boolean.TRUE;
+      case VALUE_FALSE -> Boolean.FALSE;
+      case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getNumberValue();
+      case START_OBJECT, START_ARRAY -> parser.readValueAsTree().toString();
+      default -> parser.getText();
+    };
+  }
+
+  /**
+   * Streams a CSV or NDJSON body into the table with {@code COPY ... FROM STDIN}, without
+   * materializing it in memory. COPY runs as one statement, so the load is all-or-nothing.
+   *
+   * <p>CSV is passed through to the server unchanged. NDJSON (one JSON object per line) is
+   * re-encoded to CSV on the fly; keys missing from an object load as NULL, and nested objects
+   * or arrays are written as JSON text.
+   *
+   * @param tableName the target table
+   * @param columns the columns to load, in body order; for CSV, all table columns when empty;
+   *     for NDJSON, the keys of the first object when empty
+   * @param format "csv" or "ndjson"
+   * @param header whether the first CSV line is a header to skip
+   * @param body the request body
+   * @return rows loaded and throughput
+   */
+  public BulkLoadResponse copyData(
+      String tableName, List<String> columns, String format, boolean header, InputStream body) {
+    BulkLoadResponse response = new BulkLoadResponse();
+    long startTime = System.nanoTime();
+    Timer.Sample sample = queryMetrics.start();
+    CountingInputStream in = new CountingInputStream(body);
+
+    try {
+      if (tableName == null || tableName.isEmpty()) {
+        throw new IllegalArgumentException("Table name cannot be null or empty.");
+      }
+      if (!isValidIdentifier(tableName)) {
+        throw new IllegalArgumentException("Invalid table name. Only alphanumeric characters and underscores are allowed.");
+      }
+      List<String> columnNames = columns == null ? new ArrayList<>() : new ArrayList<>(columns);
+      for (String column : columnNames) {
+        if (!isValidIdentifier(column)) {
+          throw new IllegalArgumentException("Invalid column name: " + column);
+        }
+      }
+
+      String normalizedFormat = format == null ? "csv" : format.toLowerCase(Locale.ROOT);
+      long rowsLoaded;
+      switch (normalizedFormat) {
+        case "csv" -> {
+          String sql = copySql(tableName, columnNames, header);
+          rowsLoaded = withCopyManager(copyManager -> copyManager.copyIn(sql, in, copyBufferSize));
+        }
+        case "ndjson" -> rowsLoaded = copyNdjson(tableName, columnNames, in);
+        default -> throw new IllegalArgumentException("Unsupported format: " + format + ". Use csv or ndjson.");
+      }
+
+      eventPublisher.publishEvent(new TableDataChangedEvent(tableName));
+
+      long elapsedMs = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+      response.setRc("200");
+      response.setMessage(
+          String.format("%d row(s) loaded into table '%s'.", rowsLoaded, tableName));
+      response.setRowsLoaded(rowsLoaded);
+      response.setElapsedMs(elapsedMs);
+      response.setRowsPerSecond(rowsLoaded * 1000 / elapsedMs);
+
+    } catch (IllegalArgumentException e) {
+      response.setRc("400");
+      response.setMessage("Validation error: " + e.getMessage());
+    } catch (DataAccessException e) {
+      response.setRc("500");
+      response.setMessage("Error during bulk load: " + e.getMostSpecificCause().getMessage());
+    } catch (Exception e) {
+      response.setRc("500");
+      response.setMessage("Error during bulk load: " + e.getMessage());
+    }
+
+    response.setBytesRead(in.count);
+    queryMetrics.ingest(
+        sample, "copy", response.getRc(), response.getRowsLoaded() == null ? 0 : response.getRowsLoaded());
+    return response;
+  }
+
+  private long copyNdjson(String tableName, List<String> columnNames, InputStream in)
+      throws IOException {
+    try (MappingIterator<JsonNode> rows = objectMapper.readerFor(JsonNode.class).readValues(in)) {
+      if (!rows.hasNext()) {
+        throw new IllegalArgumentException("Request body contains no rows.");
+      }
+      JsonNode first = rows.next();
+      if (!first.isObject()) {
+        throw new IllegalArgumentException("Each NDJSON line must be a JSON object.");
+      }
+      if (columnNames.isEmpty()) {
+        first.fieldNames().forEachRemaining(columnNames::add);
+        for (String column : columnNames) {
+          if (!isValidIdentifier(column)) {
+            throw new IllegalArgumentException("Invalid column name: " + column);
+          }
+        }
+      }
+
+      String sql = copySql(tableName, columnNames, false);
+      return withCopyManager(copyManager -> {
+        CopyIn copyIn = copyManager.copyIn(sql);
+        try {
+          ByteArrayOutputStream buffer = new ByteArrayOutputStream(copyBufferSize + 4096);
+          StringBuilder line = new StringBuilder();
+          JsonNode row = first;
+          while (row != null) {
+            if (!row.isObject()) {
+              throw new IllegalArgumentException("Each NDJSON line must be a JSON object.");
+            }
+            appendCsvLine(line, (ObjectNode) row, columnNames);
+            buffer.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            line.setLength(0);
+            if (buffer.size() >= copyBufferSize) {
+              copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+              buffer.reset();
+            }
+            row = rows.hasNext() ? rows.next() : null;
+          }
+          if (buffer.size() > 0) {
+            copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+          }
+          return copyIn.endCopy();
+        } finally {
+          if (copyIn.isActive()) {
+            copyIn.cancelCopy();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Writes one row as a CSV line. NULL is an unquoted empty field, every other value is quoted so
+   * empty strings stay distinct from NULL.
+   */
+  private void appendCsvLine(StringBuilder line, ObjectNode row, List<String> columnNames) {
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      JsonNode value = row.get(columnNames.get(i));
+      if (value == null || value.isNull()) {
+        continue;
+      }
+      String text = value.isContainerNode() ? value.toString() : value.asText();
+      line.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+    line.append('\n');
+  }
+
+  private String insertSql(String tableName, List<String> columnNames) {
+    String columnsPart =
+        columnNames.stream()
+            .map(this::quoteIdentifier)
+            .collect(Collectors.joining(", "));
+    String placeholders = columnNames.stream().map(c -> "?").collect(Collectors.joining(", "));
+    return String.format(
+        "INSERT INTO %s (%s) VALUES (%s)", quoteIdentifier(tableName), columnsPart, placeholders);
+  }
+
+  private String copySql(String tableName, List<String> columnNames, boolean header) {
+    String columnsPart =
+        columnNames.isEmpty()
+            ? ""
+            : columnNames.stream()
+                .map(this::quoteIdentifier)
+                .collect(Collectors.joining(", ", " (", ")"));
+    return String.format(
+        "COPY %s%s FROM STDIN WITH (FORMAT csv%s)",
+        quoteIdentifier(tableName), columnsPart, header ? ", HEADER true" : "");
+  }
+
+  private long withCopyManager(CopyCallback callback) {
+    Long rows =
+        jdbcTemplate.execute(
+            (Connection con) -> {
+              CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+              try {
+                return callback.copy(copyManager);
+              } catch (IOException e) {
+                throw new SQLException("Failed to read request body: " + e.getMessage(), e);
+              }
+            });
+    return rows == null ? 0 : rows;
+  }
+
+  @FunctionalInterface
+  private interface CopyCallback {
+    long copy(CopyManager copyManager) throws SQLException, IOException;
+  }
+
+  /** Counts the request body bytes read, for the throughput report. */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+  }
+
   /**
    * Validates that an identifier (table name or column name) contains only safe characters.
    * Allows alphanumeric characters, underscores, and spaces (which will be quoted).
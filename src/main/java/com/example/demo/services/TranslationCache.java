@@ -0,0 +1,136 @@
+package com.example.demo.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches natural-language-to-SQL translations so repeated questions skip the LLM round-trip.
+ *
+ * <p>Entries are keyed on the normalized question, the requested tables and a fingerprint of
+ * those tables' schemas. A schema change therefore never serves SQL generated for the old
+ * schema: the fingerprint changes, and {@link SchemaChangedEvent}s drop the affected entries.
+ * Callers only add a translation once its SQL has run successfully.
+ */
+@Component
+public class TranslationCache {
+
+    /**
+     * A cached translation together with the tables it was generated for.
+     */
+    public record Translation(String generatedSql, String cleanedSql, List<String> tableNames) {
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${query.ai.translation-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query.ai.translation-cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${query.ai.translation-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private Cache<String, Translation> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the cache key for a question against the given table schemas.
+     */
+    public String key(String naturalLanguageQuery, Collection<String> tableNames,
+            Map<String, Map<String, Map<String, Object>>> tableSchemas) {
+        return normalize(naturalLanguageQuery)
+            + '\u0000' + String.join(",", new TreeSet<>(tableNames))
+            + '\u0000' + fingerprint(tableSchemas);
+    }
+
+    public Translation get(String key) {
+        return enabled ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(String key, Translation translation) {
+        if (enabled) {
+            cache.put(key, translation);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        if (event.affectsAllTables()) {
+            cache.invalidateAll();
+            return;
+        }
+        cache.asMap().values().removeIf(translation -> translation.tableNames().stream().anyMatch(event::affects));
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * Collapses whitespace and drops trailing punctuation, so trivially different spellings of the
+     * same question share an entry. Case is kept because it may be part of a literal value
+     * ("customers named 'Bob'").
+     */
+    static String normalize(String naturalLanguageQuery) {
+        String normalized = naturalLanguageQuery.replaceAll("\\s+", " ").trim();
+        return normalized.replaceAll("[\\s?.!;]+$", "");
+    }
+
+    private String fingerprint(Map<String, Map<String, Map<String, Object>>> tableSchemas) {
+        try {
+            // Sorted keys make the fingerprint independent of map iteration order.
+            byte[] json = objectMapper.writer()
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .writeValueAsBytes(tableSchemas);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            // Falling back to the structural hash still changes with the schema.
+            return Integer.toHexString(tableSchemas.hashCode());
+        }
+    }
+}
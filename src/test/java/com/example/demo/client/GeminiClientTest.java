@@ -0,0 +1,169 @@
+package com.example.demo.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GeminiClientTest {
+
+  private static final String SQL_RESPONSE =
+      "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"```sql\\nSELECT id FROM users LIMIT 10;\\n```\"}]}}]}";
+
+  private HttpServer server;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private volatile int failuresBeforeSuccess;
+  private volatile long delayMs;
+  private final AtomicInteger streamRequests = new AtomicInteger();
+
+  @BeforeEach
+  void startStub() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      int attempt = requests.incrementAndGet();
+      exchange.getRequestBody().readAllBytes();
+      sleep(delayMs);
+      boolean fail = attempt <= failuresBeforeSuccess;
+      byte[] body = (fail ? "{}" : SQL_RESPONSE).getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(fail ? 503 : 200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    // Answers in chunks; the closing fence arrives long before the explanation after it.
+    server.createContext("/v1beta/models/test:streamGenerateContent", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      boolean fail = streamRequests.incrementAndGet() <= failuresBeforeSuccess;
+      exchange.getResponseHeaders().add("Content-Type", fail ? "application/json" : "text/event-stream");
+      exchange.sendResponseHeaders(fail ? 503 : 200, fail ? -1 : 0);
+      try (OutputStream out = exchange.getResponseBody()) {
+        if (!fail) {
+          for (String text : List.of("```sql\nSELECT id ", "FROM users LIMIT 10;\n``", "`\nThis selects", " ten users.")) {
+            out.write(("data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":" + quote(text) + "}]}}]}\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            sleep(text.startsWith("`\n") ? 3000 : 20);
+          }
+        }
+      } catch (IOException e) {
+        // The client stops reading once it has the SQL
+      }
+    });
+    // Sends the start of a code block, then stalls
+    server.createContext("/v1beta/models/stall:streamGenerateContent", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write("data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"```sql\\nSELECT\"}]}}]}\r\n\r\n"
+            .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        sleep(3000);
+      } catch (IOException e) {
+        // The client gives up on the stream
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  void stopStub() {
+    server.stop(0);
+  }
+
+  @Test
+  void extractsSqlFromGenerateContentResponse() throws Exception {
+    assertEquals("SELECT id FROM users LIMIT 10", client(2, 5000).generateSql("prompt"));
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  void retriesServerErrorsWithBackoff() throws Exception {
+    failuresBeforeSuccess = 2;
+    assertEquals("SELECT id FROM users LIMIT 10", client(2, 5000).generateSql("prompt"));
+    assertEquals(3, requests.get());
+    assertEquals(2, meterRegistry.get("queryx.gemini.retries").counter().count());
+    assertEquals(2, meterRegistry.get("queryx.gemini.requests").tag("status", "503").timer().count());
+  }
+
+  @Test
+  void givesUpAfterMaxRetries() {
+    failuresBeforeSuccess = 10;
+    Exception e = assertThrows(IllegalStateException.class, () -> client(1, 5000).generateSql("prompt"));
+    assertTrue(e.getMessage().contains("503"));
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  void timesOutSlowResponses() {
+    delayMs = 1000;
+    assertThrows(HttpTimeoutException.class, () -> client(0, 200).generateSql("prompt"));
+  }
+
+  @Test
+  void returnsStreamedSqlOnceTheCodeBlockCloses() throws Exception {
+    failuresBeforeSuccess = 1;
+    long start = System.nanoTime();
+    assertEquals("SELECT id FROM users LIMIT 10", streamingClient(1, 10_000).generateSql("prompt"));
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "waited for the rest of the stream");
+    assertEquals(2, streamRequests.get());
+    assertEquals(1, meterRegistry.get("queryx.gemini.retries").counter().count());
+  }
+
+  @Test
+  void timesOutStalledStreams() {
+    String url = "http://localhost:" + server.getAddress().getPort() + "/v1beta/models/stall:generateContent";
+    GeminiClient client = new GeminiClient(new ObjectMapper(), meterRegistry, url, "test-key", 1000, 300, 0, 10, 50,
+        true, "");
+    long start = System.nanoTime();
+    assertThrows(HttpTimeoutException.class, () -> client.generateSql("prompt"));
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "waited for the stalled stream");
+    assertEquals(1, meterRegistry.get("queryx.gemini.requests").tag("outcome", "timeout").timer().count());
+  }
+
+  @Test
+  void derivesStreamUrl() {
+    assertEquals("https://host/v1beta/models/m:streamGenerateContent?alt=sse",
+        GeminiClient.streamUrlFor("https://host/v1beta/models/m:generateContent"));
+  }
+
+  private GeminiClient client(int maxRetries, long requestTimeoutMs) {
+    String url = "http://localhost:" + server.getAddress().getPort() + "/v1beta/models/test:generateContent";
+    return new GeminiClient(new ObjectMapper(), meterRegistry, url, "test-key", 1000, requestTimeoutMs, maxRetries, 10, 50,
+        false, "");
+  }
+
+  private GeminiClient streamingClient(int maxRetries, long requestTimeoutMs) {
+    String url = "http://localhost:" + server.getAddress().getPort() + "/v1beta/models/test:generateContent";
+    return new GeminiClient(new ObjectMapper(), meterRegistry, url, "test-key", 1000, requestTimeoutMs, maxRetries, 10, 50,
+        true, "");
+  }
+
+  private static String quote(String text) {
+    return "\"" + text.replace("\n", "\\n") + "\"";
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
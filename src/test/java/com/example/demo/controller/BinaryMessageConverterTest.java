@@ -0,0 +1,166 @@
+package com.example.demo.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.demo.dto.QueryRequest;
+import com.example.demo.dto.QueryResponse;
+import com.example.demo.services.QueryMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+class BinaryMessageConverterTest {
+
+  private final ObjectMapper json = new ObjectMapper();
+  private final ObjectMapper smile = json.copyWith(new SmileFactory());
+  private final ObjectMapper cbor = json.copyWith(new CBORFactory());
+  private final ObjectMapper msgpack = json.copyWith(new MessagePackFactory());
+
+  private SimpleMeterRegistry meterRegistry;
+  private MockMvc mvc;
+
+  @RestController
+  static class EchoController {
+
+    @PostMapping("/echo")
+    QueryResponse echo(@RequestBody QueryRequest request) {
+      QueryResponse response = new QueryResponse();
+      response.setRc("200");
+      response.setMessage(request.getNaturalLanguageQuery());
+      response.setQueryType("AI");
+      response.setColumns(List.of("id", "name"));
+      response.setData(List.of(Map.of("id", 7, "name", "Ada")));
+      return response;
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    QueryMetrics queryMetrics = new QueryMetrics();
+    ReflectionTestUtils.setField(queryMetrics, "meterRegistry", meterRegistry);
+    // Same order as BinaryFormatConverters: JSON first, so */* still gets JSON
+    mvc = MockMvcBuilders.standaloneSetup(new EchoController())
+        .setMessageConverters(
+            new MappingJackson2HttpMessageConverter(json),
+            new BinaryMessageConverter(smile, queryMetrics, BinaryMessageConverter.SMILE),
+            new BinaryMessageConverter(cbor, queryMetrics, BinaryMessageConverter.CBOR),
+            new BinaryMessageConverter(msgpack, queryMetrics,
+                BinaryMessageConverter.MSGPACK, BinaryMessageConverter.MSGPACK_ALIAS))
+        .build();
+  }
+
+  @Test
+  void missingOrWildcardAcceptKeepsJson() {
+    assertFalse(BinaryMessageConverter.isPreferred(null));
+    assertFalse(BinaryMessageConverter.isPreferred(" "));
+    assertFalse(BinaryMessageConverter.isPreferred("*/*"));
+    assertFalse(BinaryMessageConverter.isPreferred("application/*"));
+    assertFalse(BinaryMessageConverter.isPreferred("application/json"));
+    assertFalse(BinaryMessageConverter.isPreferred("text/html, */*;q=0.8"));
+  }
+
+  @Test
+  void eachBinaryTypeIsPreferred() {
+    assertTrue(BinaryMessageConverter.isPreferred("application/x-jackson-smile"));
+    assertTrue(BinaryMessageConverter.isPreferred("application/cbor"));
+    assertTrue(BinaryMessageConverter.isPreferred("application/x-msgpack"));
+    assertTrue(BinaryMessageConverter.isPreferred("application/msgpack"));
+    assertTrue(BinaryMessageConverter.isPreferred("text/html, application/cbor"));
+  }
+
+  @Test
+  void higherQualityWinsAndHeaderOrderBreaksTies() {
+    assertFalse(BinaryMessageConverter.isPreferred("application/cbor;q=0.5, application/json"));
+    assertTrue(BinaryMessageConverter.isPreferred("application/json;q=0.5, application/x-msgpack"));
+    assertTrue(BinaryMessageConverter.isPreferred("application/x-jackson-smile, application/json"));
+    assertFalse(BinaryMessageConverter.isPreferred("application/json, application/x-jackson-smile"));
+    assertTrue(BinaryMessageConverter.isPreferred("*/*;q=0.1, application/cbor;q=0.9"));
+  }
+
+  @Test
+  void refusedTypesAreNeverPreferred() {
+    assertFalse(BinaryMessageConverter.isPreferred("application/cbor;q=0"));
+    assertFalse(BinaryMessageConverter.isPreferred("application/cbor;q=0, application/json;q=0"));
+  }
+
+  @Test
+  void invalidHeaderFallsBackToJson() {
+    assertFalse(BinaryMessageConverter.isPreferred("not a media type"));
+    assertFalse(BinaryMessageConverter.isPreferred("application/cbor;q=abc"));
+  }
+
+  @Test
+  void roundTripsSmile() throws Exception {
+    assertRoundTrip(BinaryMessageConverter.SMILE, smile);
+  }
+
+  @Test
+  void roundTripsCbor() throws Exception {
+    assertRoundTrip(BinaryMessageConverter.CBOR, cbor);
+  }
+
+  @Test
+  void roundTripsMessagePack() throws Exception {
+    assertRoundTrip(BinaryMessageConverter.MSGPACK, msgpack);
+    assertRoundTrip(BinaryMessageConverter.MSGPACK_ALIAS, msgpack);
+  }
+
+  @Test
+  void roundTripsJsonWithoutAccept() throws Exception {
+    QueryRequest request = new QueryRequest();
+    request.setNaturalLanguageQuery("top customers");
+    MockHttpServletResponse response = mvc.perform(post("/echo")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json.writeValueAsBytes(request)))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andReturn().getResponse();
+    assertEquals("top customers", json.readValue(response.getContentAsByteArray(), QueryResponse.class).getMessage());
+  }
+
+  private void assertRoundTrip(MediaType mediaType, ObjectMapper mapper) throws Exception {
+    QueryRequest request = new QueryRequest();
+    request.setNaturalLanguageQuery("top customers");
+    request.setTableNames(List.of("customers"));
+
+    MockHttpServletResponse response = mvc.perform(post("/echo")
+            .contentType(mediaType)
+            .accept(mediaType)
+            .content(mapper.writeValueAsBytes(request)))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(mediaType))
+        .andReturn().getResponse();
+
+    byte[] body = response.getContentAsByteArray();
+    assertEquals(String.valueOf(body.length), response.getHeader(HttpHeaders.CONTENT_LENGTH));
+    QueryResponse decoded = mapper.readValue(body, QueryResponse.class);
+    assertEquals("200", decoded.getRc());
+    assertEquals("top customers", decoded.getMessage());
+    assertEquals(List.of("id", "name"), decoded.getColumns());
+    assertEquals(Map.of("id", 7, "name", "Ada"), decoded.getData().get(0));
+    assertNotNull(meterRegistry.find("queryx.query.phase").tag("phase", QueryMetrics.SERIALIZATION).timer());
+  }
+}
@@ -0,0 +1,282 @@
+package com.example.demo.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Drives the main endpoints with a fixed number of concurrent clients. The app runs against an
+ * embedded PostgreSQL, and a local stub answers in the Gemini {@code generateContent} shape after
+ * a configurable delay, or as server-sent events from {@code streamGenerateContent}: the code block
+ * is complete after that delay, and an explanation follows later. Each scenario reports p50/p99/max latency and throughput on stdout and in
+ * target/load-report.txt.
+ *
+ * <p>Excluded from the default build; run with {@code mvn -Pload test}. Settings (system
+ * properties): load.concurrency, load.requests, load.warmup, load.llm-latency-ms, load.seed-rows,
+ * load.llm-stream (default true, the application default).
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EndpointLoadTest {
+
+  private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+  private static final int REQUESTS = Integer.getInteger("load.requests", 2000);
+  private static final int WARMUP = Integer.getInteger("load.warmup", 200);
+  private static final long LLM_LATENCY_MS = Long.getLong("load.llm-latency-ms", 200);
+  private static final int SEED_ROWS = Integer.getInteger("load.seed-rows", 100_000);
+  private static final boolean LLM_STREAM = Boolean.parseBoolean(System.getProperty("load.llm-stream", "true"));
+
+  private static final String GENERATED_SQL =
+      "```sql\nSELECT id, email, score FROM load_users ORDER BY score DESC LIMIT 20;\n```";
+
+  // Stopped by its own shutdown hook, after the Spring context has closed its pool.
+  private static EmbeddedPostgres postgres;
+  private static HttpServer llmStub;
+  private static final List<String> report = new ArrayList<>();
+
+  private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @LocalServerPort private int port;
+
+  @DynamicPropertySource
+  static void properties(DynamicPropertyRegistry registry) throws IOException, SQLException {
+    postgres = EmbeddedPostgres.builder().start();
+    seed();
+    llmStub = startLlmStub();
+    String jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+    registry.add("spring.datasource.url", () -> jdbcUrl);
+    registry.add("spring.datasource.username", () -> "postgres");
+    registry.add("spring.datasource.password", () -> "postgres");
+    registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+    registry.add("gemini.api.key", () -> "load-test");
+    registry.add("gemini.client.stream", () -> LLM_STREAM);
+    registry.add(
+        "gemini.api.url",
+        () -> "http://localhost:" + llmStub.getAddress().getPort() + "/v1beta/models/stub:generateContent");
+    registry.add("logging.level.com.example.demo", () -> "INFO");
+    registry.add("logging.level.com.zaxxer.hikari", () -> "INFO");
+  }
+
+  @AfterAll
+  static void writeReport() throws IOException {
+    llmStub.stop(0);
+    List<String> lines = new ArrayList<>();
+    lines.add(String.format("concurrency=%d requests=%d warmup=%d llm-latency-ms=%d llm-stream=%b seed-rows=%d",
+        CONCURRENCY, REQUESTS, WARMUP, LLM_LATENCY_MS, LLM_STREAM, SEED_ROWS));
+    lines.add(String.format("%-18s %8s %7s %9s %9s %9s %10s", "scenario", "requests", "errors", "p50 ms", "p99 ms", "max ms", "req/s"));
+    lines.addAll(report);
+    lines.forEach(System.out::println);
+    Files.write(Path.of("target", "load-report.txt"), lines);
+  }
+
+  @Test
+  void humanQuery() throws Exception {
+    run("query/execute", i -> post("/query/execute?query="
+        + encode("SELECT id, email, score FROM load_users WHERE id > " + (i * 7919L % SEED_ROWS) + " ORDER BY id LIMIT 50"),
+        HttpRequest.BodyPublishers.noBody()));
+  }
+
+  @Test
+  void aiQuery() throws Exception {
+    // A different question every time, so each request reaches the LLM stub
+    run("query/ai-query", i -> post("/query/ai-query", json(Map.of(
+        "naturalLanguageQuery", "Top scoring users, variant " + i,
+        "tableNames", List.of("load_users")))));
+  }
+
+  @Test
+  void insert() throws Exception {
+    run("tabledata/insert", i -> {
+      List<List<Map<String, Object>>> rows = new ArrayList<>();
+      for (int r = 0; r < 50; r++) {
+        rows.add(List.of(
+            Map.of("name", "email", "value", "insert" + i + "-" + r + "@example.com"),
+            Map.of("name", "score", "value", r * 1.5),
+            Map.of("name", "city", "value", "City " + r)));
+      }
+      return post("/tabledata/insert", json(Map.of("tableName", "load_users", "rows", rows)));
+    });
+  }
+
+  @Test
+  void schema() throws Exception {
+    run("schema/*", i -> HttpRequest.newBuilder(uri(i % 2 == 0 ? "/schema/tables" : "/schema/load_users")).GET().build());
+  }
+
+  private void run(String scenario, IntFunction<HttpRequest> request) throws Exception {
+    drive(WARMUP, request);
+    Result result = drive(REQUESTS, request);
+    long[] latencies = result.latenciesNanos();
+    Arrays.sort(latencies);
+    report.add(String.format("%-18s %8d %7d %9.1f %9.1f %9.1f %10.1f",
+        scenario, REQUESTS, result.errors(),
+        percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6, latencies[latencies.length - 1] / 1e6,
+        REQUESTS / (result.wallNanos() / 1e9)));
+    assertEquals(0, result.errors(), scenario + " had failed requests");
+  }
+
+  /** Closed loop: every client sends its next request as soon as the previous one completes. */
+  private Result drive(int count, IntFunction<HttpRequest> request) throws Exception {
+    long[] latencies = new long[count];
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger errors = new AtomicInteger();
+    ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+    try {
+      long start = System.nanoTime();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int c = 0; c < CONCURRENCY; c++) {
+        futures.add(clients.submit(() -> {
+          for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+            HttpRequest httpRequest = request.apply(i);
+            long sent = System.nanoTime();
+            HttpResponse<String> response = http.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            latencies[i] = System.nanoTime() - sent;
+            if (response.statusCode() != 200 || response.body().matches("(?s)\\s*\\{\"rc\":\"(?!200\")[0-9]+\".*")) {
+              errors.incrementAndGet();
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      return new Result(latencies, errors.get(), System.nanoTime() - start);
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  private record Result(long[] latenciesNanos, int errors, long wallNanos) {}
+
+  private static long percentile(long[] sorted, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, index)];
+  }
+
+  private HttpRequest post(String path, HttpRequest.BodyPublisher body) {
+    return HttpRequest.newBuilder(uri(path))
+        .header("Content-Type", "application/json")
+        .POST(body)
+        .build();
+  }
+
+  private HttpRequest.BodyPublisher json(Object body) {
+    try {
+      return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://localhost:" + port + path);
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  private static void seed() throws SQLException {
+    try (Connection con = postgres.getPostgresDatabase().getConnection();
+        Statement stmt = con.createStatement()) {
+      stmt.execute("CREATE TABLE load_users (id bigserial PRIMARY KEY, email text NOT NULL, "
+          + "score double precision, city text, created_at timestamptz DEFAULT now())");
+      stmt.execute("INSERT INTO load_users (email, score, city) SELECT 'user' || g || '@example.com', "
+          + "random() * 100, 'City ' || (g % 100) FROM generate_series(1, " + SEED_ROWS + ") g");
+      stmt.execute("ANALYZE load_users");
+    }
+  }
+
+  private static HttpServer startLlmStub() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    byte[] body = mapper.writeValueAsBytes(chunk(GENERATED_SQL, "STOP"));
+    // The streamed answer: the SQL in two chunks, then an explanation the client should not wait for
+    int fence = GENERATED_SQL.indexOf('\n', GENERATED_SQL.indexOf("FROM"));
+    List<byte[]> events = new ArrayList<>();
+    for (Map<String, Object> chunk : List.of(
+        chunk(GENERATED_SQL.substring(0, fence), null),
+        chunk(GENERATED_SQL.substring(fence), null),
+        chunk("\nThis lists the twenty highest scoring users.", "STOP"))) {
+      events.add(("data: " + mapper.writeValueAsString(chunk) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+    long[] delays = {LLM_LATENCY_MS / 2, LLM_LATENCY_MS - LLM_LATENCY_MS / 2, LLM_LATENCY_MS};
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      try {
+        if (!exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+          Thread.sleep(LLM_LATENCY_MS);
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+          return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+          for (int i = 0; i < events.size(); i++) {
+            Thread.sleep(delays[i]);
+            out.write(events.get(i));
+            out.flush();
+          }
+        } catch (IOException e) {
+          // The client stops reading once the code block is complete
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        exchange.close();
+      }
+    });
+    server.start();
+    return server;
+  }
+
+  private static Map<String, Object> chunk(String text, String finishReason) {
+    Map<String, Object> candidate = new HashMap<>();
+    candidate.put("content", Map.of("parts", List.of(Map.of("text", text))));
+    if (finishReason != null) {
+      candidate.put("finishReason", finishReason);
+    }
+    return Map.of("candidates", List.of(candidate));
+  }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AIBatchServiceTest {
+
+  @Test
+  void readsSqlByQuestionIdFromTheAnswer() {
+    AIBatchService service = new AIBatchService();
+    ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+
+    String answer = "json\n[{\"id\": 1, \"sql\": \"SELECT id FROM users WHERE tags = ARRAY['a'];\"},"
+        + " {\"id\": 3, \"sql\": \"  SELECT count(*) FROM orders \"}, {\"id\": 4, \"sql\": \"\"}]";
+    assertEquals(
+        Map.of(1, "SELECT id FROM users WHERE tags = ARRAY['a'];", 3, "SELECT count(*) FROM orders"),
+        service.parseAnswers(answer));
+    assertTrue(service.parseAnswers("SELECT 1").isEmpty());
+    assertTrue(service.parseAnswers("[{\"id\": 1, \"sql\": ").isEmpty());
+  }
+}
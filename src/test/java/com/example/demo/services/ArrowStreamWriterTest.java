@@ -0,0 +1,123 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.flatbuf.Schema;
+import org.apache.arrow.flatbuf.Type;
+import org.junit.jupiter.api.Test;
+
+class ArrowStreamWriterTest {
+
+  @Test
+  void writesSchemaBatchesAndEndOfStream() throws Exception {
+    CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+    RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+    metaData.setColumnCount(3);
+    column(metaData, 1, "id", Types.INTEGER, "int4");
+    column(metaData, 2, "name", Types.VARCHAR, "text");
+    column(metaData, 3, "active", Types.BIT, "bool");
+    rows.setMetaData(metaData);
+    addRow(rows, 1, "Zoë", true);
+    addRow(rows, null, "", null);
+    addRow(rows, 3, null, false);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ArrowStreamWriter writer = new ArrowStreamWriter(out, 2);
+    writer.writeHeader(rows.getMetaData());
+    // A CachedRowSet inserts every row before the previous one
+    rows.afterLast();
+    while (rows.previous()) {
+      writer.writeRow(rows);
+    }
+    writer.finish();
+
+    ByteBuffer stream = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    List<Message> messages = new ArrayList<>();
+    List<ByteBuffer> bodies = new ArrayList<>();
+    while (true) {
+      assertEquals(-1, stream.getInt());
+      int metadataLength = stream.getInt();
+      if (metadataLength == 0) {
+        break;
+      }
+      assertEquals(0, metadataLength % 8);
+      Message message = Message.getRootAsMessage(stream.slice().limit(metadataLength).order(ByteOrder.LITTLE_ENDIAN));
+      stream.position(stream.position() + metadataLength);
+      bodies.add(stream.slice().limit((int) message.bodyLength()).order(ByteOrder.LITTLE_ENDIAN));
+      stream.position(stream.position() + (int) message.bodyLength());
+      messages.add(message);
+    }
+    assertFalse(stream.hasRemaining());
+    assertEquals(3, messages.size());
+
+    Schema schema = (Schema) messages.get(0).header(new Schema());
+    assertEquals(MessageHeader.Schema, messages.get(0).headerType());
+    assertEquals("id", schema.fields(0).name());
+    assertEquals(Type.Int, schema.fields(0).typeType());
+    assertEquals(Type.Utf8, schema.fields(1).typeType());
+    assertEquals(Type.Bool, schema.fields(2).typeType());
+
+    RecordBatch first = (RecordBatch) messages.get(1).header(new RecordBatch());
+    assertEquals(2, first.length());
+    assertEquals(1, first.nodes(0).nullCount());
+    assertEquals(0, first.nodes(1).nullCount());
+    // id: validity bitmap, then the values
+    assertEquals(0b01, bodies.get(1).get((int) first.buffers(0).offset()));
+    assertEquals(1, bodies.get(1).getInt((int) first.buffers(1).offset()));
+    // name: validity, offsets, data
+    assertEquals(4, bodies.get(1).getInt((int) first.buffers(3).offset() + 4));
+    assertEquals(4, bodies.get(1).getInt((int) first.buffers(3).offset() + 8));
+    byte[] name = new byte[4];
+    bodies.get(1).get((int) first.buffers(4).offset(), name);
+    assertEquals("Zoë", new String(name, StandardCharsets.UTF_8));
+
+    RecordBatch second = (RecordBatch) messages.get(2).header(new RecordBatch());
+    assertEquals(1, second.length());
+    assertEquals(1, second.nodes(1).nullCount());
+    assertEquals(3, bodies.get(2).getInt((int) second.buffers(1).offset()));
+  }
+
+  private static void column(RowSetMetaDataImpl metaData, int index, String name, int type, String typeName)
+      throws SQLException {
+    metaData.setColumnName(index, name);
+    metaData.setColumnLabel(index, name);
+    metaData.setColumnType(index, type);
+    metaData.setColumnTypeName(index, typeName);
+  }
+
+  private static void addRow(CachedRowSet rows, Integer id, String name, Boolean active) throws SQLException {
+    rows.moveToInsertRow();
+    if (id == null) {
+      rows.updateNull(1);
+    } else {
+      rows.updateInt(1, id);
+    }
+    if (name == null) {
+      rows.updateNull(2);
+    } else {
+      rows.updateString(2, name);
+    }
+    if (active == null) {
+      rows.updateNull(3);
+    } else {
+      rows.updateBoolean(3, active);
+    }
+    rows.insertRow();
+    rows.moveToCurrentRow();
+  }
+}
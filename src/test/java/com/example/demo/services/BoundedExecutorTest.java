@@ -0,0 +1,75 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BoundedExecutorTest {
+
+  @Test
+  void neverRunsMoreThanItsLimit() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      BoundedExecutor lanes = new BoundedExecutor(3);
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      CountDownLatch done = new CountDownLatch(20);
+      for (int i = 0; i < 20; i++) {
+        lanes.submit(() -> CompletableFuture.runAsync(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          done.countDown();
+        }, pool));
+      }
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(3, maxRunning.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void operationsThatFailToStartFreeTheirSlot() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      BoundedExecutor lanes = new BoundedExecutor(1);
+      List<CompletableFuture<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        int value = i;
+        results.add(lanes.submit(() -> value % 2 == 0
+            ? CompletableFuture.failedFuture(new RejectedExecutionException("full"))
+            : CompletableFuture.supplyAsync(() -> value, pool)));
+      }
+      CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+          .exceptionally(error -> null)
+          .get(5, TimeUnit.SECONDS);
+      for (int i = 0; i < 6; i++) {
+        if (i % 2 == 0) {
+          ExecutionException error = assertThrows(ExecutionException.class, results.get(i)::get);
+          assertTrue(error.getCause() instanceof RejectedExecutionException);
+        } else {
+          assertEquals(i, results.get(i).get());
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
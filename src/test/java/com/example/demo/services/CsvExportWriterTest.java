@@ -0,0 +1,86 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import org.junit.jupiter.api.Test;
+
+class CsvExportWriterTest {
+
+  @Test
+  void writesCopyCompatibleCsv() throws Exception {
+    CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+    RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+    metaData.setColumnCount(4);
+    column(metaData, 1, "id", Types.BIGINT, "int8");
+    column(metaData, 2, "score", Types.REAL, "float4");
+    column(metaData, 3, "active", Types.BIT, "bool");
+    column(metaData, 4, "note, text", Types.VARCHAR, "text");
+    rows.setMetaData(metaData);
+    addRow(rows, -42L, 0.1f, true, "plain");
+    addRow(rows, Long.MIN_VALUE, null, false, "say \"hi\",\nbye");
+    addRow(rows, null, 2.5f, null, "");
+    addRow(rows, 7L, null, null, null);
+    addRow(rows, 0L, null, null, "naïve 😀");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CsvExportWriter writer = new CsvExportWriter(out);
+    writer.writeHeader(rows.getMetaData());
+    // A CachedRowSet inserts every row before the previous one
+    rows.afterLast();
+    while (rows.previous()) {
+      writer.writeRow(rows);
+    }
+    writer.finish();
+
+    assertEquals(
+        "id,score,active,\"note, text\"\n"
+            + "-42,0.1,true,plain\n"
+            + "-9223372036854775808,,false,\"say \"\"hi\"\",\nbye\"\n"
+            + ",2.5,,\"\"\n"
+            + "7,,,\n"
+            + "0,,,naïve 😀\n",
+        out.toString(StandardCharsets.UTF_8));
+  }
+
+  private static void column(RowSetMetaDataImpl metaData, int index, String name, int type, String typeName)
+      throws SQLException {
+    metaData.setColumnName(index, name);
+    metaData.setColumnLabel(index, name);
+    metaData.setColumnType(index, type);
+    metaData.setColumnTypeName(index, typeName);
+  }
+
+  private static void addRow(CachedRowSet rows, Long id, Float score, Boolean active, String note)
+      throws SQLException {
+    rows.moveToInsertRow();
+    if (id == null) {
+      rows.updateNull(1);
+    } else {
+      rows.updateLong(1, id);
+    }
+    if (score == null) {
+      rows.updateNull(2);
+    } else {
+      rows.updateFloat(2, score);
+    }
+    if (active == null) {
+      rows.updateNull(3);
+    } else {
+      rows.updateBoolean(3, active);
+    }
+    if (note == null) {
+      rows.updateNull(4);
+    } else {
+      rows.updateString(4, note);
+    }
+    rows.insertRow();
+    rows.moveToCurrentRow();
+  }
+}
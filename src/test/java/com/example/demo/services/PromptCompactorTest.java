@@ -0,0 +1,86 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.dto.PromptSummary;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PromptCompactorTest {
+
+  private final PromptCompactor compactor = new PromptCompactor();
+
+  @Test
+  void keepsRelevantColumnsWithinBudget() {
+    ReflectionTestUtils.setField(compactor, "maxTokens", 400);
+    Map<String, Map<String, Map<String, Object>>> schemas = Map.of("orders", table(200, "customer_email", "order_total"));
+    PromptSummary summary = new PromptSummary();
+
+    String description = compactor.describe("Total of orders by customer email", schemas, 1000, false, summary);
+
+    assertTrue(description.contains("orders(id bigint PK, "), description);
+    assertTrue(description.contains("customer_email varchar"), description);
+    assertTrue(description.contains("order_total numeric"), description);
+    assertTrue(description.matches("(?s).*\\+\\d+ more\\)\n"), description);
+    assertTrue(summary.getColumnsOmitted() > 0);
+    assertEquals(203, summary.getColumnsIncluded() + summary.getColumnsOmitted());
+    assertTrue(1000 + description.length() <= 400 * 4, "over budget: " + description.length());
+  }
+
+  @Test
+  void describesEveryColumnWithoutBudget() {
+    ReflectionTestUtils.setField(compactor, "maxTokens", 0);
+    PromptSummary summary = new PromptSummary();
+
+    String description = compactor.describe("anything", Map.of("orders", table(50)), 0, false, summary);
+
+    assertFalse(description.contains("more)"));
+    assertEquals(51, summary.getColumnsIncluded());
+  }
+
+  @Test
+  void selectsTablesMatchingTheQuestion() {
+    ReflectionTestUtils.setField(compactor, "maxAutoTables", 2);
+    Map<String, Map<String, Map<String, Object>>> schemas = new LinkedHashMap<>();
+    schemas.put("audit_log", table(5));
+    schemas.put("customers", table(5, "email"));
+    schemas.put("invoices", table(5, "customer_id"));
+    schemas.put("sales.orders", table(5, "customer_id", "shipped_at"));
+
+    Map<String, Map<String, Map<String, Object>>> selected =
+        compactor.selectTables("Which customers placed the most orders?", schemas);
+
+    assertEquals(List.of("sales.orders", "customers"), List.copyOf(selected.keySet()));
+  }
+
+  /** An "id" primary key, {@code filler} unrelated columns, then the named ones. */
+  private static Map<String, Map<String, Object>> table(int filler, String... named) {
+    Map<String, Object> columns = new LinkedHashMap<>();
+    columns.put("id", column("id", "bigint", 1, true));
+    for (int i = 0; i < filler; i++) {
+      columns.put("attribute_" + i, column("attribute_" + i, "text", i + 2, false));
+    }
+    for (int i = 0; i < named.length; i++) {
+      String type = named[i].endsWith("_id") ? "bigint" : named[i].endsWith("total") ? "numeric" : "character varying";
+      columns.put(named[i], column(named[i], type, filler + i + 2, false));
+    }
+    Map<String, Map<String, Object>> table = new LinkedHashMap<>();
+    table.put("columns", columns);
+    table.put("indexes", new LinkedHashMap<>());
+    return table;
+  }
+
+  private static Map<String, Object> column(String name, String type, int position, boolean primaryKey) {
+    Map<String, Object> column = new LinkedHashMap<>();
+    column.put("column_name", name);
+    column.put("data_type", type);
+    column.put("ordinal_position", position);
+    column.put("is_primary_key", primaryKey);
+    return column;
+  }
+}
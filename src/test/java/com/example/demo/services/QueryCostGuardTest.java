@@ -0,0 +1,155 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.dto.QueryPlanSummary;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class QueryCostGuardTest {
+
+  private static final String LIMITED = "SELECT * FROM (%s) AS cost_guarded LIMIT 100";
+
+  /** Plans by SQL text; a missing entry fails to plan. */
+  private final Map<String, QueryPlanSummary> plans = new HashMap<>();
+  private final List<String> explained = new ArrayList<>();
+  private final Map<String, DataAccessException> failures = new HashMap<>();
+
+  private QueryCostGuard guard;
+  private QueryRegistry.RunningQuery query;
+
+  @BeforeEach
+  void setUp() {
+    guard = new QueryCostGuard() {
+      @Override
+      QueryPlanSummary explain(String sql, QueryRegistry.RunningQuery query) {
+        explained.add(sql);
+        if (failures.containsKey(sql)) {
+          throw failures.get(sql);
+        }
+        QueryPlanSummary plan = plans.get(sql);
+        if (plan == null) {
+          throw new BadSqlGrammarException("explain", sql, new SQLException("syntax error at or near \"FRM\"", "42601"));
+        }
+        return new QueryPlanSummary(plan.getNodeType(), plan.getStartupCost(), plan.getTotalCost(),
+            plan.getPlanRows(), "accepted", null);
+      }
+    };
+    ReflectionTestUtils.setField(guard, "maxCost", 1000.0);
+    ReflectionTestUtils.setField(guard, "maxRows", 100L);
+    ReflectionTestUtils.setField(guard, "onExceed", "limit");
+    query = new QueryRegistry().register(null, "AI", null);
+  }
+
+  private void plan(String sql, double totalCost, long rows) {
+    plans.put(sql, new QueryPlanSummary("Seq Scan", 0.0, totalCost, rows, "accepted", null));
+  }
+
+  @Test
+  void acceptsCheapStatementsUnchanged() {
+    String sql = "SELECT id FROM users WHERE id = 1";
+    plan(sql, 8.3, 1);
+
+    QueryCostGuard.Verdict verdict = guard.check(sql, query);
+
+    assertFalse(verdict.isRejected());
+    assertEquals(sql, verdict.sql());
+    assertEquals("accepted", verdict.plan().getAction());
+    assertNull(verdict.plan().getAppliedLimit());
+    assertEquals(List.of(sql), explained);
+  }
+
+  @Test
+  void wrapsLargeSelectsInALimit() {
+    for (String sql : List.of("SELECT * FROM a CROSS JOIN b", "with t as (select 1) select * from t, a",
+        "(SELECT * FROM a) UNION ALL (SELECT * FROM b)")) {
+      plan(sql, 500, 1_000_000);
+      plan(String.format(LIMITED, sql), 5, 100);
+
+      QueryCostGuard.Verdict verdict = guard.check(sql, query);
+
+      assertFalse(verdict.isRejected(), sql);
+      assertEquals(String.format(LIMITED, sql), verdict.sql());
+      assertEquals("limited", verdict.plan().getAction());
+      assertEquals(100L, verdict.plan().getAppliedLimit());
+      assertEquals(5.0, verdict.plan().getTotalCost());
+    }
+  }
+
+  @Test
+  void rejectsLargeStatementsThatCannotBeLimited() {
+    String update = "UPDATE users SET name = 'x' RETURNING *";
+    plan(update, 500, 1_000_000);
+    QueryCostGuard.Verdict verdict = guard.check(update, query);
+    assertTrue(verdict.isRejected());
+    assertTrue(verdict.rejection().contains("1000000 rows exceeds the limit of 100"), verdict.rejection());
+    assertEquals("rejected", verdict.plan().getAction());
+    assertEquals(List.of(update), explained);
+
+    String select = "SELECT * FROM a";
+    plan(select, 500, 1_000_000);
+    ReflectionTestUtils.setField(guard, "onExceed", "REJECT");
+    assertTrue(guard.check(select, query).isRejected());
+  }
+
+  @Test
+  void rejectsStatementsAboveMaxCost() {
+    String sql = "SELECT * FROM a JOIN b USING (id)";
+    plan(sql, 50_000, 10);
+    QueryCostGuard.Verdict verdict = guard.check(sql, query);
+    assertTrue(verdict.isRejected());
+    assertTrue(verdict.rejection().contains("estimated cost 50000 exceeds the limit of 1000"), verdict.rejection());
+    assertEquals("rejected", verdict.plan().getAction());
+  }
+
+  @Test
+  void judgesCostAfterTheLimitIsAdded() {
+    String sql = "SELECT * FROM a ORDER BY score";
+    plan(sql, 800, 1_000_000);
+    plan(String.format(LIMITED, sql), 50_000, 100);
+
+    QueryCostGuard.Verdict verdict = guard.check(sql, query);
+
+    assertTrue(verdict.isRejected());
+    assertEquals(String.format(LIMITED, sql), verdict.sql());
+    assertEquals(100L, verdict.plan().getAppliedLimit());
+    assertEquals("rejected", verdict.plan().getAction());
+  }
+
+  @Test
+  void rejectsStatementsThatCannotBePlanned() {
+    QueryCostGuard.Verdict verdict = guard.check("SELECT * FRM users", query);
+    assertTrue(verdict.isRejected());
+    assertNull(verdict.plan());
+    assertTrue(verdict.rejection().startsWith("Generated SQL could not be planned: syntax error"), verdict.rejection());
+
+    String sql = "SELECT * FROM a";
+    plan(sql, 500, 1_000_000);
+    verdict = guard.check(sql, query);
+    assertTrue(verdict.isRejected());
+    assertTrue(verdict.rejection().contains("a LIMIT could not be added"), verdict.rejection());
+    assertEquals("rejected", verdict.plan().getAction());
+  }
+
+  @Test
+  void stoppedQueriesAreNotReportedAsRejections() {
+    String sql = "SELECT pg_sleep(60)";
+    UncategorizedSQLException cancelled = new UncategorizedSQLException("explain", sql,
+        new SQLException("canceling statement due to user request", QueryRegistry.QUERY_CANCELED));
+    failures.put(sql, cancelled);
+    assertEquals(cancelled, assertThrows(DataAccessException.class, () -> guard.check(sql, query)));
+  }
+}
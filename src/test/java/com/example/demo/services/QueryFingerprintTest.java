@@ -0,0 +1,40 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class QueryFingerprintTest {
+
+  @Test
+  void stripsLiteralsAndComments() {
+    assertEquals(
+        "select id, \"Email\" from users where name = ? and score > ? and t1.x = ?",
+        QueryFingerprint.normalize(
+            "SELECT id,  \"Email\"\n FROM users -- all of them\n WHERE name = 'O''Brien' AND score > 1.5e3 AND t1.x = E'\\n';"));
+    assertEquals(
+        "select $1 from t where body = ?",
+        QueryFingerprint.normalize("select $1 from t /* note */ where body = $tag$ it's 'quoted' $tag$"));
+  }
+
+  @Test
+  void collapsesListsSoLengthDoesNotMatter() {
+    assertEquals(
+        QueryFingerprint.normalize("SELECT * FROM users WHERE id IN (1, 2, 3)"),
+        QueryFingerprint.normalize("select * from users where id in (42,43)"));
+    assertEquals(
+        "insert into t (a, b) values (?, ...), ...",
+        QueryFingerprint.normalize("INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y'), (3, 'z')"));
+  }
+
+  @Test
+  void keepsDifferentShapesApart() {
+    assertNotEquals(
+        QueryFingerprint.id(QueryFingerprint.normalize("SELECT * FROM users WHERE id = 1")),
+        QueryFingerprint.id(QueryFingerprint.normalize("SELECT * FROM orders WHERE id = 1")));
+    assertEquals(
+        QueryFingerprint.id(QueryFingerprint.normalize("SELECT * FROM users WHERE id = 1")),
+        QueryFingerprint.id(QueryFingerprint.normalize("select *  from users where id = 2")));
+  }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.dto.QueryParameter;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+class QueryParameterBinderTest {
+
+  private static MapSqlParameterSource bind(QueryParameter... parameters) {
+    return QueryParameterBinder.bind(List.of(parameters));
+  }
+
+  private static void assertBound(Object expected, int sqlType, String type, Object value) {
+    MapSqlParameterSource source = bind(new QueryParameter("p", type, value));
+    assertEquals(expected, source.getValue("p"), type);
+    assertEquals(sqlType, source.getSqlType("p"), type);
+  }
+
+  @Test
+  void convertsEverySupportedType() {
+    assertBound("O'Brien; DROP TABLE users", Types.VARCHAR, "text", "O'Brien; DROP TABLE users");
+    assertBound("42", Types.VARCHAR, "varchar", 42);
+    assertBound(42, Types.INTEGER, "integer", "42");
+    assertBound(42, Types.INTEGER, "int", 42);
+    assertBound(9_000_000_000L, Types.BIGINT, "bigint", "9000000000");
+    assertBound(new BigDecimal("12.50"), Types.NUMERIC, "numeric", "12.50");
+    assertBound(1.5, Types.DOUBLE, "double", "1.5");
+    assertBound(true, Types.BOOLEAN, "boolean", "yes");
+    assertBound(false, Types.BOOLEAN, "bool", false);
+    assertBound(LocalDate.of(2024, 2, 29), Types.DATE, "date", "2024-02-29");
+    assertBound(LocalTime.of(13, 45), Types.TIME, "time", "13:45");
+    assertBound(LocalDateTime.of(2024, 1, 2, 3, 4, 5), Types.TIMESTAMP, "timestamp", "2024-01-02T03:04:05");
+    assertBound(OffsetDateTime.parse("2024-01-02T03:04:05+02:00"), Types.TIMESTAMP_WITH_TIMEZONE,
+        "timestamptz", "2024-01-02T03:04:05+02:00");
+    UUID id = UUID.randomUUID();
+    assertBound(id, Types.OTHER, "uuid", id.toString());
+    assertBound(null, Types.INTEGER, "integer", null);
+  }
+
+  @Test
+  void typesAreCaseInsensitiveAndOptional() {
+    assertBound(7L, Types.BIGINT, " BigInt ", 7);
+    MapSqlParameterSource source = bind(new QueryParameter("p", null, 7));
+    assertEquals(7, source.getValue("p"));
+    assertEquals(MapSqlParameterSource.TYPE_UNKNOWN, source.getSqlType("p"));
+  }
+
+  @Test
+  void bindsListsElementByElement() {
+    MapSqlParameterSource source = bind(new QueryParameter("ids", "integer", List.of("1", 2, "3")));
+    assertEquals(List.of(1, 2, 3), source.getValue("ids"));
+    assertEquals(Types.INTEGER, source.getSqlType("ids"));
+    assertEquals(Arrays.asList("a", null), bind(new QueryParameter("names", "text", Arrays.asList("a", null))).getValue("names"));
+
+    IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+        () -> bind(new QueryParameter("ids", "integer", List.of(1, "two"))));
+    assertTrue(error.getMessage().contains("'ids'"), error.getMessage());
+  }
+
+  @Test
+  void serializesJsonValuesInsteadOfBindingThemAsLists() {
+    assertBound("{\"b\":[true,null]}", Types.OTHER, "jsonb", Map.of("b", Arrays.asList(true, null)));
+    assertBound("[1,2]", Types.OTHER, "json", List.of(1, 2));
+    assertBound("{\"raw\":true}", Types.OTHER, "json", "{\"raw\":true}");
+  }
+
+  @Test
+  void rejectsInvalidValues() {
+    assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter("p", "integer", "1 OR 1=1")));
+    assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter("p", "integer", "3000000000")));
+    assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter("p", "boolean", "maybe")));
+    assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter("p", "date", "2024-02-30")));
+    assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter("p", "uuid", "not-a-uuid")));
+    assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter("p", "numeric", "1e")));
+    IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+        () -> bind(new QueryParameter("p", "money", 1)));
+    assertTrue(error.getMessage().contains("Unsupported type 'money'"), error.getMessage());
+  }
+
+  @Test
+  void rejectsInvalidAndDuplicateNames() {
+    for (String name : Arrays.asList(null, "", "1st", "a-b", "a b", "x;DROP TABLE users", ":p")) {
+      assertThrows(IllegalArgumentException.class, () -> bind(new QueryParameter(name, "text", "v")), name);
+    }
+    assertThrows(IllegalArgumentException.class,
+        () -> QueryParameterBinder.bind(Arrays.asList((QueryParameter) null)));
+    IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+        () -> bind(new QueryParameter("p", "text", "a"), new QueryParameter("p", "text", "b")));
+    assertEquals("Duplicate parameter: p", error.getMessage());
+    assertEquals(0, QueryParameterBinder.bind(null).getParameterNames().length);
+  }
+
+  @Test
+  void cacheKeyIgnoresOrderButNotTypes() {
+    List<QueryParameter> ab = List.of(new QueryParameter("a", "integer", 1), new QueryParameter("b", "text", "x"));
+    List<QueryParameter> ba = List.of(new QueryParameter("b", "text", "x"), new QueryParameter("a", "integer", 1));
+    assertEquals(QueryParameterBinder.cacheKey(ab), QueryParameterBinder.cacheKey(ba));
+
+    assertNotEquals(QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", null, 1))),
+        QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", null, "1"))));
+    assertNotEquals(QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", "integer", 1))),
+        QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", "bigint", 1))));
+    assertNotEquals(QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", "text", "x"))),
+        QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", "text", "y"))));
+    assertNotEquals(QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", "text", null))),
+        QueryParameterBinder.cacheKey(List.of(new QueryParameter("a", "text", "null"))));
+
+    assertEquals("", QueryParameterBinder.cacheKey(null));
+    assertEquals("", QueryParameterBinder.cacheKey(List.of()));
+  }
+}
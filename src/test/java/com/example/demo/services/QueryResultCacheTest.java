@@ -0,0 +1,82 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.dto.QueryResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class QueryResultCacheTest {
+
+  @Test
+  void cachesSingleReadsOfARelation() {
+    assertTrue(QueryResultCache.isCacheable("SELECT id FROM users WHERE id = 1"));
+    assertTrue(QueryResultCache.isCacheable(
+        "select * from sales.users u, \"Orders\" o left join items i on i.order_id = o.id;"));
+    assertTrue(QueryResultCache.isCacheable(
+        "WITH o AS (SELECT user_id FROM orders) SELECT * FROM o JOIN users ON users.id = o.user_id"));
+    assertTrue(QueryResultCache.isCacheable("(SELECT * FROM active_users_v)"));
+    assertTrue(QueryResultCache.isCacheable("SELECT * FROM get_orders(1)"));
+  }
+
+  @Test
+  void refusesStatementsThatWriteOrAreVolatile() {
+    assertFalse(QueryResultCache.isCacheable("DELETE FROM users"));
+    assertFalse(QueryResultCache.isCacheable("SELECT now(), id FROM users"));
+    assertFalse(QueryResultCache.isCacheable("SELECT * FROM users ORDER BY random()"));
+    assertFalse(QueryResultCache.isCacheable("SELECT * FROM users FOR UPDATE"));
+    assertFalse(QueryResultCache.isCacheable("SELECT * INTO backup FROM users"));
+    assertFalse(QueryResultCache.isCacheable("WITH d AS (DELETE FROM users RETURNING *) SELECT * FROM d"));
+    assertFalse(QueryResultCache.isCacheable("SHOW search_path"));
+  }
+
+  @Test
+  void refusesMultipleStatementsAndStatementsWithoutARelation() {
+    assertFalse(QueryResultCache.isCacheable("SELECT * FROM users; SELECT * FROM orders"));
+    assertFalse(QueryResultCache.isCacheable("SELECT 1"));
+    assertFalse(QueryResultCache.isCacheable("SELECT 'from users'"));
+  }
+
+  @Test
+  void keywordsInsideLiteralsDoNotCount() {
+    assertTrue(QueryResultCache.isCacheable("SELECT * FROM notes WHERE body = 'delete from x; now()'"));
+    assertTrue(QueryResultCache.isReadOnly("SELECT * FROM notes WHERE body = 'drop table'"));
+    assertFalse(QueryResultCache.isReadOnly("UPDATE notes SET body = 'x'"));
+  }
+
+  @Test
+  void writesThroughTheApiDropResultsReadThroughViews() {
+    QueryResultCache cache = new QueryResultCache();
+    ReflectionTestUtils.setField(cache, "enabled", true);
+    ReflectionTestUtils.setField(cache, "maxBytes", 1_000_000L);
+    ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+    ReflectionTestUtils.setField(cache, "maxRows", 100);
+    cache.init();
+
+    String viewKey = cache.key("SELECT * FROM active_users_v", "ROWS");
+    String functionKey = cache.key("SELECT * FROM get_orders(1)", "ROWS");
+    cache.put(viewKey, "SELECT * FROM active_users_v", result(), cache.generation());
+    cache.put(functionKey, "SELECT * FROM get_orders(1)", result(), cache.generation());
+    assertNotNull(cache.get(viewKey));
+    assertNotNull(cache.get(functionKey));
+
+    // The view reads users and the function reads orders; neither name appears in the statements
+    cache.onTableDataChanged(new TableDataChangedEvent("users"));
+    assertNull(cache.get(viewKey));
+    assertNull(cache.get(functionKey));
+
+    cache.put(viewKey, "SELECT * FROM active_users_v", result(), cache.generation());
+    cache.onSchemaChanged(new SchemaChangedEvent("users"));
+    assertNull(cache.get(viewKey));
+  }
+
+  private static QueryResponse result() {
+    QueryResponse result = new QueryResponse();
+    result.setRowsAffected(0);
+    return result;
+  }
+}
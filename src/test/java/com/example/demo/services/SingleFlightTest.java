@@ -0,0 +1,108 @@
+package com.example.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void identicalCallsInFlightShareOneResult() {
+    SingleFlight<String, String> flight = new SingleFlight<>("test", true, meterRegistry);
+    AtomicInteger started = new AtomicInteger();
+    CompletableFuture<String> answer = new CompletableFuture<>();
+
+    SingleFlight.Call<String> first = flight.submit("q", () -> {
+      started.incrementAndGet();
+      return answer;
+    });
+    SingleFlight.Call<String> second = flight.submit("q", () -> {
+      started.incrementAndGet();
+      return CompletableFuture.completedFuture("other");
+    });
+    SingleFlight.Call<String> otherKey = flight.submit("r", () -> {
+      started.incrementAndGet();
+      return CompletableFuture.completedFuture("r");
+    });
+
+    assertFalse(first.shared());
+    assertTrue(second.shared());
+    assertFalse(otherKey.shared());
+    answer.complete("SELECT 1");
+    assertEquals("SELECT 1", first.result().join());
+    assertEquals("SELECT 1", second.result().join());
+    assertEquals(2, started.get());
+    assertEquals(1.0, meterRegistry.get("queryx.singleflight.shared").counter().count());
+
+    // Finished calls are not reused
+    SingleFlight.Call<String> later = flight.submit("q", () -> CompletableFuture.completedFuture("SELECT 2"));
+    assertFalse(later.shared());
+    assertEquals("SELECT 2", later.result().join());
+    assertEquals(0, flight.inFlight());
+  }
+
+  @Test
+  void blockingCallersWaitForTheLeaderAndSeeItsFailure() throws Exception {
+    SingleFlight<String, List<String>> flight = new SingleFlight<>("test", true, meterRegistry);
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      results.add(executor.submit(() -> flight.run("users", () -> {
+        loads.incrementAndGet();
+        loading.countDown();
+        await(release);
+        return List.of("id", "email");
+      })));
+      assertTrue(loading.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> flight.run("users", () -> {
+          loads.incrementAndGet();
+          return List.of();
+        })));
+      }
+      while (meterRegistry.get("queryx.singleflight.shared").counter().count() < 3) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      for (Future<List<String>> result : results) {
+        assertEquals(List.of("id", "email"), result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    IllegalStateException failure = new IllegalStateException("catalog unavailable");
+    assertSame(failure, assertThrows(IllegalStateException.class, () -> flight.run("orders", () -> {
+      throw failure;
+    })));
+    assertEquals(0, flight.inFlight());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}